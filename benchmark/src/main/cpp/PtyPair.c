@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#define _GNU_SOURCE
+#include <stdlib.h>
+#include <termios.h>
+#include <unistd.h>
+#include <fcntl.h>
+#include <string.h>
+#include <errno.h>
+#include <jni.h>
+
+static void throwIOException(JNIEnv *env, const char *msg) {
+    jclass IOExceptionClass = (*env)->FindClass(env, "java/io/IOException");
+    if (IOExceptionClass != NULL) (*env)->ThrowNew(env, IOExceptionClass, msg);
+}
+
+/*
+ * Opens the master side of a new pseudo-terminal in raw mode.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_benchmark_PtyPair_nativeOpen
+        (JNIEnv *env, jclass clazz) {
+    struct termios cfg;
+    int fd = posix_openpt(O_RDWR | O_NOCTTY | O_CLOEXEC);
+    if (fd == -1 || grantpt(fd) == -1 || unlockpt(fd) == -1) {
+        throwIOException(env, strerror(errno));
+        if (fd != -1) close(fd);
+        return -1;
+    }
+    if (tcgetattr(fd, &cfg) == 0) {
+        cfmakeraw(&cfg);
+        tcsetattr(fd, TCSANOW, &cfg);
+    }
+    return fd;
+}
+
+JNIEXPORT jstring JNICALL Java_android_serialport_benchmark_PtyPair_nativeSlaveName
+        (JNIEnv *env, jclass clazz, jint fd) {
+    char name[128];
+    if (ptsname_r(fd, name, sizeof(name)) != 0) {
+        throwIOException(env, strerror(errno));
+        return NULL;
+    }
+    return (*env)->NewStringUTF(env, name);
+}
+
+JNIEXPORT jint JNICALL Java_android_serialport_benchmark_PtyPair_nativeRead
+        (JNIEnv *env, jclass clazz, jint fd, jbyteArray buffer, jint offset, jint length) {
+    jbyte buf[16384];
+    ssize_t n;
+    if (length > (jint) sizeof(buf)) length = sizeof(buf);
+    do {
+        n = read(fd, buf, (size_t) length);
+    } while (n == -1 && errno == EINTR);
+    if (n == -1) {
+        throwIOException(env, strerror(errno));
+        return -1;
+    }
+    (*env)->SetByteArrayRegion(env, buffer, offset, (jsize) n, buf);
+    return (jint) n;
+}
+
+JNIEXPORT void JNICALL Java_android_serialport_benchmark_PtyPair_nativeWrite
+        (JNIEnv *env, jclass clazz, jint fd, jbyteArray buffer, jint offset, jint length) {
+    jbyte buf[16384];
+    while (length > 0) {
+        jint chunk = length > (jint) sizeof(buf) ? (jint) sizeof(buf) : length;
+        jint done = 0;
+        (*env)->GetByteArrayRegion(env, buffer, offset, chunk, buf);
+        while (done < chunk) {
+            ssize_t n = write(fd, buf + done, (size_t) (chunk - done));
+            if (n == -1) {
+                if (errno == EINTR) continue;
+                throwIOException(env, strerror(errno));
+                return;
+            }
+            done += (jint) n;
+        }
+        offset += chunk;
+        length -= chunk;
+    }
+}
+
+JNIEXPORT void JNICALL Java_android_serialport_benchmark_PtyPair_nativeClose
+        (JNIEnv *env, jclass clazz, jint fd) {
+    close(fd);
+}
@@ -0,0 +1,142 @@
+package android.serialport.benchmark;
+
+import android.serialport.DelimiterFrameDecoder;
+import android.serialport.FixedLengthFrameDecoder;
+import android.serialport.FrameDecoder;
+import android.serialport.IdleGapFrameDecoder;
+import android.serialport.LengthFieldFrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分帧开销，结果单位为字节/秒；legacy为原ActivityMain.checkByBeginEnd的ArrayList&lt;Byte&gt;做法
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameDecoderBenchmark {
+
+    private static final int STREAM_LENGTH = 64 * 1024;
+    private static final int READ_CHUNK = 256;
+    private static final byte[] HEAD = {(byte) 0xAA, 0x55};
+    private static final byte[] TAIL = {0x0D, 0x0A};
+
+    @Param({"delimiter", "lengthField", "fixedLength", "idleGap", "legacy"})
+    public String decoder;
+
+    @Param({"32", "512"})
+    public int frameLength;
+
+    private byte[] stream;
+    private FrameDecoder frameDecoder;
+    private LegacyBeginEnd legacy;
+    private int frames;
+    private final FrameDecoder.Listener listener = (buffer, offset, length) -> frames++;
+
+    @Setup
+    public void setUp() {
+        //帧格式：AA 55 | 长度(2字节大端) | 负载 | 0D 0A，负载中不出现帧头帧尾
+        stream = new byte[STREAM_LENGTH / frameLength * frameLength];
+        int payload = frameLength - 6;
+        for (int p = 0; p < stream.length; p += frameLength) {
+            stream[p] = HEAD[0];
+            stream[p + 1] = HEAD[1];
+            stream[p + 2] = (byte) (payload >> 8);
+            stream[p + 3] = (byte) payload;
+            for (int i = 0; i < payload; i++) stream[p + 4 + i] = (byte) ('a' + i % 26);
+            stream[p + frameLength - 2] = TAIL[0];
+            stream[p + frameLength - 1] = TAIL[1];
+        }
+        switch (decoder) {
+            case "delimiter":
+                frameDecoder = new DelimiterFrameDecoder(HEAD, TAIL, 4096);
+                break;
+            case "lengthField":
+                frameDecoder = new LengthFieldFrameDecoder(2, 2, true, 2, 4096);
+                break;
+            case "fixedLength":
+                frameDecoder = new FixedLengthFrameDecoder(frameLength);
+                break;
+            case "idleGap":
+                frameDecoder = new IdleGapFrameDecoder(1750000L, frameLength);
+                break;
+            default:
+                legacy = new LegacyBeginEnd();
+                break;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public int decode() {
+        frames = 0;
+        for (int p = 0; p < stream.length; p += READ_CHUNK) {
+            int n = Math.min(READ_CHUNK, stream.length - p);
+            if (legacy != null) legacy.decode(stream, p, n);
+            else frameDecoder.decode(stream, p, n, listener);
+        }
+        return legacy != null ? legacy.frames : frames;
+    }
+
+    /**
+     * 原ActivityMain中帧头+帧尾分帧的实现，用作对照
+     */
+    private static final class LegacyBeginEnd {
+        final ArrayList<Byte> readBufferArray = new ArrayList<>();
+        boolean validBegin;
+        int frames;
+
+        void decode(byte[] readBs, int offset, int length) {
+            for (int k = offset; k < offset + length; k++) {
+                readBufferArray.add(readBs[k]);
+                if (!validBegin && readBufferArray.size() == HEAD.length) {
+                    validBegin = true;
+                    for (int i = 0; i < HEAD.length; i++) {
+                        if (readBufferArray.get(i) != HEAD[i]) {
+                            readBufferArray.remove(0);
+                            validBegin = false;
+                            break;
+                        }
+                    }
+                    if (!validBegin) continue;
+                }
+                if (validBegin && readBufferArray.size() > HEAD.length) {
+                    Byte[] boxed = readBufferArray.toArray(new Byte[0]);
+                    byte[] tmpBs = new byte[boxed.length];
+                    for (int i = 0; i < boxed.length; i++) tmpBs[i] = boxed[i];
+                    if (endWith(tmpBs)) {
+                        readBufferArray.clear();
+                        validBegin = false;
+                        frames++;
+                    }
+                }
+            }
+        }
+
+        private static boolean endWith(byte[] srcBs) {
+            int from = srcBs.length - TAIL.length;
+            if (from < 0) return false;
+            for (int i = 0; i < TAIL.length; i++) {
+                if (srcBs[i + from] != TAIL[i]) return false;
+            }
+            return true;
+        }
+    }
+}
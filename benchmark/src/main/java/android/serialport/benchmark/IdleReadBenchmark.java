@@ -0,0 +1,103 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialPort;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空闲串口上带超时的读：对端不发送数据，read在poll中等到超时返回0，JMH报告每次等待的耗时(应接近timeoutMs)
+ * <p>
+ * 同时统计读线程的CPU时间占等待时长的比例，结束时打印；超过{@link #MAX_CPU_RATIO}时以异常结束，
+ * 即等待退化成了轮询或忙等
+ * <p>
+ * 参考(x86_64主机)：timeoutMs=10时约0.5%，100时约0.09%，即每次调用几十微秒，与等待时长无关
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IdleReadBenchmark {
+
+    private static final double MAX_CPU_RATIO = 0.02;
+
+    @Param({"10", "100"})
+    public int timeoutMs;
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private PtyPair pty;
+    private SerialPort serialPort;
+    private byte[] heap;
+    private ByteBuffer direct;
+    private long cpuNanos;
+    private long wallNanos;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (!threads.isCurrentThreadCpuTimeSupported()) throw new IllegalStateException("thread cpu time not supported");
+        pty = PtyPair.open();
+        serialPort = new SerialPort(new File(pty.getSlavePath()), 115200);
+        serialPort.open();
+        heap = new byte[64];
+        direct = ByteBuffer.allocateDirect(64);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCpu() {
+        cpuNanos = 0;
+        wallNanos = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkCpu() {
+        double ratio = (double) cpuNanos / Math.max(1, wallNanos);
+        System.out.printf("reader cpu %.3f%% of %d ms waited%n", ratio * 100, TimeUnit.NANOSECONDS.toMillis(wallNanos));
+        if (ratio > MAX_CPU_RATIO) throw new IllegalStateException("idle read is using cpu: " + ratio);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialPort.tryClose();
+        pty.close();
+    }
+
+    @Benchmark
+    public int idleRead() throws IOException {
+        long cpu = threads.getCurrentThreadCpuTime();
+        long wall = System.nanoTime();
+        int readC;
+        if ("direct".equals(buffer)) {
+            direct.clear();
+            readC = serialPort.read(direct, timeoutMs);
+        } else {
+            readC = serialPort.read(heap, 0, heap.length, timeoutMs);
+        }
+        wallNanos += System.nanoTime() - wall;
+        cpuNanos += threads.getCurrentThreadCpuTime() - cpu;
+        if (readC != 0) throw new IllegalStateException("unexpected data on idle pty: " + readC);
+        return readC;
+    }
+}
@@ -0,0 +1,118 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialPort;
+import android.serialport.modbus.ModbusCrc;
+import android.serialport.modbus.ModbusRtuMaster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modbus RTU一问一答：伪终端主设备端运行从站模拟，应答读保持寄存器并校验主站解析出的值
+ * <p>
+ * usb模式把应答拆成两段、中间停顿16ms，模拟FTDI延迟定时器的成批送达；停顿远大于9600波特率下的t3.5(约4ms)，
+ * 主站不能把它当作帧结束。解析失败时基准测试以异常结束
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ModbusRtuBenchmark {
+
+    private static final int SLAVE = 1;
+    private static final int USB_LATENCY_MS = 16;
+
+    @Param({"uart", "usb"})
+    public String delivery;
+
+    @Param({"10"})
+    public int registers;
+
+    private PtyPair pty;
+    private SerialPort serialPort;
+    private ModbusRtuMaster master;
+    private Thread slave;
+    private int[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pty = PtyPair.open();
+        serialPort = new SerialPort(new File(pty.getSlavePath()), 9600);
+        serialPort.open();
+        master = new ModbusRtuMaster(serialPort);
+        values = new int[registers];
+        final boolean usb = "usb".equals(delivery);
+        slave = new Thread(() -> simulateSlave(usb), "modbus-slave");
+        slave.setDaemon(true);
+        slave.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        //先关从设备端，主设备端的read随之返回EIO，模拟线程退出
+        serialPort.tryClose();
+        slave.join(1000);
+        pty.close();
+    }
+
+    @Benchmark
+    public int[] readHoldingRegisters() throws IOException {
+        master.readHoldingRegisters(SLAVE, 0, registers, values, 0);
+        for (int i = 0; i < registers; i++) {
+            if (values[i] != 0x1000 + i) throw new IllegalStateException("register " + i + " = " + values[i]);
+        }
+        return values;
+    }
+
+    private void simulateSlave(boolean usb) {
+        byte[] request = new byte[8];
+        byte[] response = new byte[5 + 2 * ModbusRtuMaster.MAX_READ_REGISTERS];
+        try {
+            while (true) {
+                pty.readFully(request, 0, request.length);
+                int address = ((request[2] & 0xFF) << 8) | (request[3] & 0xFF);
+                int count = ((request[4] & 0xFF) << 8) | (request[5] & 0xFF);
+                response[0] = request[0];
+                response[1] = request[1];
+                response[2] = (byte) (2 * count);
+                for (int i = 0; i < count; i++) {
+                    int value = 0x1000 + address + i;
+                    response[3 + 2 * i] = (byte) (value >> 8);
+                    response[4 + 2 * i] = (byte) value;
+                }
+                int length = 3 + 2 * count;
+                int crc = ModbusCrc.crc16(response, 0, length);
+                response[length] = (byte) crc;
+                response[length + 1] = (byte) (crc >> 8);
+                length += 2;
+                if (usb) {
+                    int first = length / 2;
+                    pty.write(response, 0, first);
+                    Thread.sleep(USB_LATENCY_MS);
+                    pty.write(response, first, length - first);
+                } else {
+                    pty.write(response, 0, length);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            //串口关闭
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialPort;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打开、配置并关闭串口一次的耗时，对应断线重连时的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenCloseBenchmark {
+
+    private PtyPair pty;
+    private SerialPort serialPort;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pty = PtyPair.open();
+        serialPort = new SerialPort(new File(pty.getSlavePath()), 115200);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialPort.tryClose();
+        pty.close();
+    }
+
+    @Benchmark
+    public void openClose() throws IOException {
+        serialPort.open();
+        serialPort.tryClose();
+    }
+}
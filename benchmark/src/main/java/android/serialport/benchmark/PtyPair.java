@@ -0,0 +1,70 @@
+package android.serialport.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 伪终端对：从设备路径交给{@link android.serialport.SerialPort}打开，主设备端由本类直接读写，模拟串口对端
+ */
+public final class PtyPair implements Closeable {
+
+    private final int masterFd;
+    private final String slavePath;
+
+    private PtyPair(int masterFd, String slavePath) {
+        this.masterFd = masterFd;
+        this.slavePath = slavePath;
+    }
+
+    public static PtyPair open() throws IOException {
+        int fd = nativeOpen();
+        try {
+            return new PtyPair(fd, nativeSlaveName(fd));
+        } catch (IOException e) {
+            nativeClose(fd);
+            throw e;
+        }
+    }
+
+    /**
+     * 从设备路径，如/dev/pts/3
+     */
+    public String getSlavePath() {
+        return slavePath;
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return nativeRead(masterFd, buffer, offset, length);
+    }
+
+    public void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = nativeRead(masterFd, buffer, offset, length);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        nativeWrite(masterFd, buffer, offset, length);
+    }
+
+    @Override
+    public void close() {
+        nativeClose(masterFd);
+    }
+
+    private static native int nativeOpen() throws IOException;
+
+    private static native String nativeSlaveName(int fd) throws IOException;
+
+    private static native int nativeRead(int fd, byte[] buffer, int offset, int length) throws IOException;
+
+    private static native void nativeWrite(int fd, byte[] buffer, int offset, int length) throws IOException;
+
+    private static native void nativeClose(int fd);
+
+    static {
+        System.loadLibrary("pty_pair");
+    }
+}
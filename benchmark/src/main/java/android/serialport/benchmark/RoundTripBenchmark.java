@@ -0,0 +1,71 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialPort;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 往返延迟：对端发出一帧，串口读到后原样写回，对端读完为一次往返
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RoundTripBenchmark {
+
+    @Param({"16", "256"})
+    public int frameLength;
+
+    private PtyPair pty;
+    private SerialPort serialPort;
+    private byte[] frame;
+    private byte[] echo;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pty = PtyPair.open();
+        serialPort = new SerialPort(new File(pty.getSlavePath()), 115200);
+        serialPort.open();
+        frame = new byte[frameLength];
+        for (int i = 0; i < frameLength; i++) frame[i] = (byte) i;
+        echo = new byte[frameLength];
+        buffer = ByteBuffer.allocateDirect(frameLength);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialPort.tryClose();
+        pty.close();
+    }
+
+    @Benchmark
+    public byte[] roundTrip() throws IOException {
+        pty.write(frame, 0, frameLength);
+        buffer.clear();
+        while (buffer.hasRemaining()) serialPort.read(buffer, -1);
+        buffer.flip();
+        serialPort.write(buffer);
+        pty.readFully(echo, 0, frameLength);
+        return echo;
+    }
+}
@@ -0,0 +1,101 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialHistogram;
+import android.serialport.SerialPort;
+import android.serialport.SerialThreadPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收抖动：对端写出一帧到串口读到为止的耗时分布，JMH报告p50/p99/p99.9
+ * <p>
+ * 另用{@link SerialPort#getLastReadTimestampNanos()}减去发送时刻记录内核到读返回的延迟，
+ * 不含读返回之后的Java开销，结束时打印其百分位数。realtime模式对读线程应用{@link SerialThreadPolicy}
+ * <p>
+ * 参考(x86_64主机，root，默认迭代)：p50两种模式都约4.5us；p99.9 normal 70us、realtime 39us；
+ * p99.99 normal 3.8ms、realtime 0.78ms。SCHED_FIFO主要削减的是被抢占造成的毫秒级尾部
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RxJitterBenchmark {
+
+    private static final int FRAME_LENGTH = 8;
+
+    @Param({"normal", "realtime"})
+    public String readerMode;
+
+    private PtyPair pty;
+    private SerialPort serialPort;
+    private byte[] frame;
+    private ByteBuffer buffer;
+    private final SerialHistogram latency = new SerialHistogram();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        //Scope.Thread的Setup在测量线程中执行，策略作用于读线程
+        if ("realtime".equals(readerMode)) {
+            int applied = new SerialThreadPolicy()
+                    .setFifoPriority(50)
+                    .setNiceness(-19)
+                    .applyToCurrentThread();
+            System.out.println("thread policy applied: " + applied);
+        }
+        pty = PtyPair.open();
+        serialPort = new SerialPort(new File(pty.getSlavePath()), 115200);
+        serialPort.open();
+        frame = new byte[FRAME_LENGTH];
+        buffer = ByteBuffer.allocateDirect(FRAME_LENGTH);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLatency() {
+        latency.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printLatency() {
+        SerialHistogram.Snapshot s = latency.snapshot();
+        System.out.printf("rx timestamp latency (ns): n=%d p50=%d p99=%d p99.9=%d max=%d%n",
+                s.getCount(), s.getValueAtPercentile(50), s.getValueAtPercentile(99),
+                s.getValueAtPercentile(99.9), s.getMax());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialPort.tryClose();
+        pty.close();
+    }
+
+    @Benchmark
+    public long receive() throws IOException {
+        long sent = System.nanoTime();
+        pty.write(frame, 0, FRAME_LENGTH);
+        buffer.clear();
+        while (buffer.hasRemaining()) serialPort.read(buffer, -1);
+        //多次read时取最后一块的到达时刻，即整帧到齐的时刻
+        long arrived = serialPort.getLastReadTimestampNanos();
+        latency.record(arrived - sent);
+        return arrived;
+    }
+}
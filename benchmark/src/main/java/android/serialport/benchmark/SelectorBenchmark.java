@@ -0,0 +1,122 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialPort;
+import android.serialport.SerialPortSelector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多串口事件循环：ports个伪终端注册在同一个{@link SerialPortSelector}上，处理器把读到的数据原样写回
+ * <p>
+ * oneOfN每次只向其中一个串口发一帧，测分发延迟是否随注册数量增加；allOfN同时向所有串口各发一帧，
+ * 等全部回显，测单线程服务所有串口的吞吐。每帧带串口编号，回显错位、处理器跑在多个线程或串口报错时以异常结束
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SelectorBenchmark {
+
+    private static final int FRAME_LENGTH = 16;
+
+    @Param({"1", "8", "32"})
+    public int ports;
+
+    private PtyPair[] ptys;
+    private SerialPort[] serialPorts;
+    private byte[][] frames;
+    private byte[] echo;
+    private SerialPortSelector selector;
+    private volatile Thread loopThread;
+    private volatile String failure;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ptys = new PtyPair[ports];
+        serialPorts = new SerialPort[ports];
+        frames = new byte[ports][FRAME_LENGTH];
+        echo = new byte[FRAME_LENGTH];
+        selector = new SerialPortSelector();
+        SerialPortSelector.Handler handler = new SerialPortSelector.Handler() {
+            private final byte[] buffer = new byte[256];
+
+            @Override
+            public void onReadable(SerialPort serialPort) throws IOException {
+                Thread current = Thread.currentThread();
+                if (loopThread == null) loopThread = current;
+                else if (loopThread != current) failure = "handlers on more than one thread";
+                int readC = serialPort.read(buffer, 0, buffer.length, 0);
+                if (readC > 0) serialPort.write(ByteBuffer.wrap(buffer, 0, readC));
+            }
+
+            @Override
+            public void onWritable(SerialPort serialPort) {
+            }
+
+            @Override
+            public void onError(SerialPort serialPort, IOException e) {
+                failure = serialPort.getDevice() + ": " + e;
+            }
+        };
+        for (int i = 0; i < ports; i++) {
+            ptys[i] = PtyPair.open();
+            serialPorts[i] = new SerialPort(new File(ptys[i].getSlavePath()), 115200);
+            serialPorts[i].open();
+            Arrays.fill(frames[i], (byte) i);
+            selector.register(serialPorts[i], SerialPortSelector.OP_READ, handler);
+        }
+        selector.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        selector.close();
+        for (int i = 0; i < ports; i++) {
+            serialPorts[i].tryClose();
+            ptys[i].close();
+        }
+    }
+
+    @Benchmark
+    public byte[] oneOfN() throws IOException {
+        int i = next;
+        next = (i + 1) % ports;
+        ptys[i].write(frames[i], 0, FRAME_LENGTH);
+        receiveEcho(i);
+        return echo;
+    }
+
+    @Benchmark
+    public byte[] allOfN() throws IOException {
+        for (int i = 0; i < ports; i++) ptys[i].write(frames[i], 0, FRAME_LENGTH);
+        for (int i = 0; i < ports; i++) receiveEcho(i);
+        return echo;
+    }
+
+    private void receiveEcho(int port) throws IOException {
+        ptys[port].readFully(echo, 0, FRAME_LENGTH);
+        if (failure != null) throw new IllegalStateException(failure);
+        if (!Arrays.equals(echo, frames[port])) throw new IllegalStateException("port " + port + " echoed " + Arrays.toString(echo));
+    }
+}
@@ -0,0 +1,100 @@
+package android.serialport.benchmark;
+
+import android.serialport.SerialPort;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收吞吐，结果单位为字节/秒；配合-prof gc查看各接收路径的分配率
+ * <ul>
+ * <li>stream：原SerialSample的做法，available()轮询并为每块new byte[]</li>
+ * <li>array：{@link SerialPort#read(byte[], int, int, int)}，复用数组</li>
+ * <li>direct：{@link SerialPort#read(ByteBuffer, int)}，复用直接缓冲区</li>
+ * </ul>
+ * 伪终端不按波特率限速，baudRate参数用于确认每个波特率都能被open()接受并覆盖对应的配置路径
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ThroughputBenchmark {
+
+    private static final int CHUNK = 4096;
+
+    @Param({"9600", "115200", "921600", "3000000", "4000000"})
+    public int baudRate;
+
+    @Param({"stream", "array", "direct"})
+    public String path;
+
+    private PtyPair pty;
+    private SerialPort serialPort;
+    private InputStream inputStream;
+    private byte[] chunk;
+    private byte[] array;
+    private ByteBuffer direct;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pty = PtyPair.open();
+        serialPort = new SerialPort(new File(pty.getSlavePath()), baudRate);
+        serialPort.open();
+        inputStream = serialPort.getInputStream();
+        chunk = new byte[CHUNK];
+        array = new byte[CHUNK];
+        direct = ByteBuffer.allocateDirect(CHUNK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialPort.tryClose();
+        pty.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK)
+    public int receive() throws IOException {
+        pty.write(chunk, 0, CHUNK);
+        int total = 0;
+        switch (path) {
+            case "stream":
+                while (total < CHUNK) {
+                    int canRead = inputStream.available();
+                    if (canRead > 0) {
+                        byte[] readBs = new byte[canRead];
+                        total += inputStream.read(readBs);
+                    }
+                }
+                break;
+            case "array":
+                while (total < CHUNK) total += serialPort.read(array, 0, CHUNK - total, -1);
+                break;
+            default:
+                direct.clear();
+                while (direct.hasRemaining()) total += serialPort.read(direct, -1);
+                break;
+        }
+        return total;
+    }
+}
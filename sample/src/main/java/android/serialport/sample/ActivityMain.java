@@ -20,6 +20,12 @@ import android.app.Activity;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.serialport.DelimiterFrameDecoder;
+import android.serialport.FrameDecoder;
+import android.serialport.SerialDataListener;
+import android.serialport.SerialPatternMatcher;
+import android.serialport.SerialWriteScheduler;
+import android.serialport.SerialPortFinder;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
@@ -41,17 +47,17 @@ import android.widget.Toast;
 
 import com.google.common.io.BaseEncoding;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class ActivityMain extends Activity {
     private static final String TAG = ActivityMain.class.getName();
     private Spinner spinnerSerialPort;
-    private TtyAdapter<TtyFile> adapter;
+    private TtyAdapter adapter;
+    private final SerialPortFinder serialPortFinder = new SerialPortFinder();
     private TextView textViewReceive, textViewReceiveCount, textViewReceiveCountMatch, textViewReceiveMessage;
     private EditText editTextDelay, editTextSendTimes, editTextSendMsg, editTextHexHead, editTextHexEnd;
     private Switch switchOpenClose;
@@ -63,6 +69,7 @@ public class ActivityMain extends Activity {
     private ImageButton imageButtonClear;
     private SerialSample serialSample;
     private Thread writeThread;
+    private ReceiveDisplay receiveDisplay;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -76,7 +83,7 @@ public class ActivityMain extends Activity {
         this.editTextDelay = this.findViewById(R.id.editTextDelay);
         this.editTextSendTimes = this.findViewById(R.id.editTextSendTimes);
         this.spinnerSerialPort = this.findViewById(R.id.spinnerSerialPort);
-        this.adapter = new TtyAdapter<>();
+        this.adapter = new TtyAdapter();
         this.spinnerSerialPort.setAdapter(adapter);
         this.editTextSendMsg = this.findViewById(R.id.editTextSendMsg);
         this.checkboxHex = this.findViewById(R.id.checkboxHex);
@@ -86,6 +93,7 @@ public class ActivityMain extends Activity {
         this.radioGroupCheckReceive = this.findViewById(R.id.radioGroupCheckReceive);
         this.editTextHexHead = this.findViewById(R.id.editTextHexHead);
         this.editTextHexEnd = this.findViewById(R.id.editTextHexEnd);
+        this.receiveDisplay = new ReceiveDisplay(mHandler, textViewReceiveMessage, textViewReceiveCount, textViewReceiveCountMatch);
 
         ((Switch) this.findViewById(R.id.switchOpenClose)).setOnCheckedChangeListener((compoundButton, b) -> {
             if (b) {
@@ -97,9 +105,8 @@ public class ActivityMain extends Activity {
                 Log.d(TAG, "打开串口：" + path + ":" + br);
                 try {
                     if (serialSample == null) serialSample = new SerialSample();
-                    serialSample.open(new File(path), Integer.parseInt(br), (code, obj) -> {
-                        if (obj instanceof byte[]) countReadBytes((byte[]) obj);
-                    });
+                    //收发数据录制到应用私有目录，需要排查现场问题时取出用SerialReplayer回放
+                    serialSample.open(new File(path), Integer.parseInt(br), getExternalFilesDir("capture"), receiveListener);
 
                 } catch (Exception e) {
                     mHandler.obtainMessage(1, "串口打开失败：" + e.getMessage()).sendToTarget();
@@ -129,24 +136,27 @@ public class ActivityMain extends Activity {
                     return;
                 }
                 Log.d(TAG, "开始发送数据，次数：" + sendTimes + " 间隔：" + delay + " 字节：" + BaseEncoding.base16().encode(rb));
+                //间隔由调度线程按线路发完的时刻计时，不再用sleep
+                serialSample.setFrameGap(delay);
                 writeThread = new Thread(() -> {
                     boolean writeOk = true;
                     for (int i = 0; i < sendTimes; i++) {
-                        if (i > 0 && delay > 0) {
-                            try {
-                                Thread.sleep(delay);
-                            } catch (InterruptedException e) {
-                                writeResp.callback(2, String.valueOf(i));
-                                break;
-                            }
-                        }
                         Log.d(TAG, "写入字节：" + BaseEncoding.base16().encode(rb));
                         try {
-                            serialSample.write(rb);
+                            //批量通道，其他通道的控制帧可以插到两次发送之间
+                            serialSample.send(rb, SerialWriteScheduler.LANE_BULK).get();
                         } catch (IOException e) {
                             writeOk = false;
                             writeResp.callback(1, "写入失败：" + e.getMessage());
                             break;
+                        } catch (ExecutionException e) {
+                            writeOk = false;
+                            writeResp.callback(1, "写入失败：" + e.getCause().getMessage());
+                            break;
+                        } catch (InterruptedException e) {
+                            writeOk = false;
+                            writeResp.callback(2, String.valueOf(i));
+                            break;
                         }
                         mHandler.obtainMessage(9, (i + 1), sendTimes).sendToTarget();
                     }
@@ -163,7 +173,7 @@ public class ActivityMain extends Activity {
         this.imageButtonClear.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                mHandler.obtainMessage(8).sendToTarget();
+                receiveDisplay.clearLines();
             }
         });
         this.editTextHexHead.addTextChangedListener(new TextWatcher() {
@@ -199,144 +209,98 @@ public class ActivityMain extends Activity {
         showReceiveHex = this.checkboxReceiveHex.isChecked();
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        serialPortFinder.stopWatching();
+    }
+
     private byte[] sendBytes = null;
-    private int totalReceiveCount = 0, totalMatch = 0;
-    private int matchedLength = -1;
+    private SerialPatternMatcher sendMatcher = null;
 
     private void resetBufferedReceive() {
         this.sendBytes = null;
-        this.totalReceiveCount = 0;
-        this.matchedLength = -1;
-        this.totalMatch = 0;
-        this.readBufferArray.clear();
+        this.sendMatcher = null;
+        this.receiveDisplay.reset();
+        this.frameDecoder = null;
         this.headBs = null;
         this.endBs = null;
-        this.headSize = 0;
     }
 
-    private void countReadBytes(byte[] readBs) {
-        Log.d(TAG, "收到字节：" + BaseEncoding.base16().encode(readBs));
+    private final SerialDataListener receiveListener = new SerialDataListener() {
+        @Override
+        public void onData(byte[] buffer, int offset, int length) {
+            countReadBytes(buffer, offset, length);
+        }
+
+        @Override
+        public void onError(IOException e) {
+            mHandler.obtainMessage(1, "串口异常：" + e.getMessage()).sendToTarget();
+        }
+
+        @Override
+        public void onStateChanged(int state) {
+            //断开后由SupervisedSerialPort自动重连，开关保持打开
+            if (state == STATE_RECONNECTING) mHandler.obtainMessage(0, "串口断开，正在重连").sendToTarget();
+            else if (state == STATE_RUNNING) mHandler.obtainMessage(0, "串口已连接").sendToTarget();
+        }
+    };
+
+    private void countReadBytes(byte[] readBs, int offset, int length) {
         if (((RadioButton) this.radioGroupCheckReceive.getChildAt(0)).isChecked()) {
-            String directBsString;
-            if (showReceiveHex) directBsString = BaseEncoding.base16().encode(readBs);
-            else directBsString = new String(readBs);
-            onReceiveOnFrameBs(directBsString);
+            receiveDisplay.addFrame(readBs, offset, length, showReceiveHex);
         } else if (((RadioButton) this.radioGroupCheckReceive.getChildAt(1)).isChecked()) {
-            this.checkBySendBytes(readBs);
+            this.checkBySendBytes(readBs, offset, length);
         } else if (((RadioButton) this.radioGroupCheckReceive.getChildAt(2)).isChecked()) {
-            this.checkByBeginEnd(readBs);
+            this.checkByBeginEnd(readBs, offset, length);
         }
-        //字节累计数
-        totalReceiveCount += readBs.length;
-        this.mHandler.obtainMessage(6, totalReceiveCount).sendToTarget();
+        //字节累计数，由receiveDisplay合并后按帧率刷新
+        receiveDisplay.addReceived(length);
     }
 
-    private void checkBySendBytes(byte[] readBs) {
-        if (this.sendBytes == null) parseSendBytes();
-        int lineSize = this.sendBytes.length;
-        for (byte b : readBs) {
-            if (matchedLength == -1) {
-                if (b == sendBytes[0]) matchedLength = 1;
-            } else if (b == sendBytes[matchedLength]) {
-                matchedLength++;
-                if (matchedLength == lineSize) {
-                    Log.d(TAG, "完帧");
-                    matchedLength = -1;
-                    onReceiveOnFrameBs(BaseEncoding.base16().encode(sendBytes));
-                }
-            } else {
-                matchedLength = -1;
-            }
+    private final SerialPatternMatcher.Listener sendMatchListener = (patternId, position) ->
+            receiveDisplay.addFrame(sendBytes, 0, sendBytes.length, true);
+
+    private void checkBySendBytes(byte[] readBs, int offset, int length) {
+        if (this.sendMatcher == null) {
+            if (this.sendBytes == null) parseSendBytes();
+            if (this.sendBytes.length == 0) return;
+            //跨数据块匹配，重叠出现的也会计数
+            SerialPatternMatcher matcher = new SerialPatternMatcher();
+            matcher.add(this.sendBytes);
+            matcher.compile();
+            this.sendMatcher = matcher;
         }
+        this.sendMatcher.match(readBs, offset, length, sendMatchListener);
     }
 
-    private void onReceiveOnFrameBs(String bsString) {
-        //Log.d(TAG, "一帧：" + receiveTxt);
-        totalMatch++;
-        this.mHandler.obtainMessage(5, bsString).sendToTarget();
-        this.mHandler.obtainMessage(7, totalMatch).sendToTarget();
-    }
-
-    private final ArrayList<Byte> readBufferArray = new ArrayList<>();
+    private static final int MAX_FRAME_LENGTH = 4096;
+    private FrameDecoder frameDecoder = null;
     private byte[] headBs = null, endBs = null;
-    private int headSize = 0;
 
     private void prepareBeginEndByte() {
         headBs = null;
         endBs = null;
-        validBegin = false;
-        headSize = 0;
-        readBufferArray.clear();
-        readBufferArray.trimToSize();
+        frameDecoder = null;
         if (this.editTextHexHead.getText().toString().length() > 0) {
             headBs = BaseEncoding.base16().decode(editTextHexHead.getText().toString());
-            headSize = headBs.length;
             Log.d(TAG, "开头字节：" + BaseEncoding.base16().encode(headBs));
         }
         if (this.editTextHexEnd.getText().toString().length() > 0) {
             endBs = BaseEncoding.base16().decode(editTextHexEnd.getText().toString());
             Log.d(TAG, "结尾字节：" + BaseEncoding.base16().encode(endBs));
         }
-    }
-
-    boolean validBegin = false;
-
-    private void checkByBeginEnd(byte[] readBs) {
-        if (headBs == null && endBs == null) return;
-        if (headBs == null) validBegin = true;
-        byte[] tmpBs;
-        for (byte b : readBs) {
-            readBufferArray.add(b);
-            //需要开头但还没有开头
-            if (!validBegin && headBs != null && readBufferArray.size() == headSize) {
-                validBegin = true;
-                for (int i = 0; i < headSize; i++) {
-                    if (readBufferArray.get(i) != headBs[i]) {
-                        readBufferArray.remove(0);
-                        validBegin = false;
-                        break;
-                    }
-                }
-                if (!validBegin) continue;
-            }
-            if (validBegin) {//开头未结尾
-                if (readBufferArray.size() > headSize) {//开头并多出，开始查找结尾
-                    tmpBs = ArrayUtils.toPrimitive(readBufferArray.toArray(new Byte[0]));
-                    if (endBs != null) {
-                        //Log.d(TAG, "缓冲字节：" + BaseEncoding.base16().encode(tmpBs));
-                        if (endWithBs(tmpBs, endBs)) {
-                            Log.d(TAG, "结尾，完帧" + BaseEncoding.base16().encode(tmpBs));
-                            readBufferArray.clear();
-                            validBegin = false;
-                            if (showReceiveHex) onReceiveOnFrameBs(BaseEncoding.base16().encode(tmpBs));
-                            else onReceiveOnFrameBs(new String(tmpBs));
-                        }
-                    } else if (headBs != null) {
-                        if (endWithBs(tmpBs, headBs)) {
-                            int len = readBufferArray.size();
-                            byte[] frameBs = new byte[len - headBs.length];
-                            System.arraycopy(tmpBs, 0, frameBs, 0, len - headBs.length);
-                            readBufferArray.clear();
-                            for (byte hb : headBs) {
-                                readBufferArray.add(hb);
-                            }
-                            Log.d(TAG, "又开头，完帧" + BaseEncoding.base16().encode(frameBs));
-                            validBegin = true;
-                            onReceiveOnFrameBs(BaseEncoding.base16().encode(frameBs));
-                        }
-                    }
-                }
-            }
+        if (headBs != null || endBs != null) {
+            frameDecoder = new DelimiterFrameDecoder(headBs, endBs, MAX_FRAME_LENGTH);
         }
     }
 
-    private boolean endWithBs(byte[] srcBs, byte[] endBs) {
-        int from = srcBs.length - endBs.length;
-        if (from < 0) return false;
-        for (int i = 0; i < endBs.length; i++) {
-            if (srcBs[i + from] != endBs[i]) return false;
-        }
-        return true;
+    private final FrameDecoder.Listener frameListener = (buffer, offset, length) ->
+            receiveDisplay.addFrame(buffer, offset, length, showReceiveHex || endBs == null);
+
+    private void checkByBeginEnd(byte[] readBs, int offset, int length) {
+        if (frameDecoder == null) return;
+        frameDecoder.decode(readBs, offset, length, frameListener);
     }
 
     private boolean compareBs(byte[] bs1, byte[] bs2) {
@@ -375,67 +339,37 @@ public class ActivityMain extends Activity {
 
     private void listSerialPort() {
         new Thread(() -> {
-            File devFile = new File("/dev/");
-            if (!devFile.exists() || !devFile.isDirectory()) {
-                mHandler.obtainMessage(1, "无法访问设备串口目录").sendToTarget();
-                return;
-            }
-            File[] ttyFiles = devFile.listFiles();
-            if (ttyFiles == null || ttyFiles.length == 0) {
-                mHandler.obtainMessage(1, "设备串口为空").sendToTarget();
-                return;
-            }
-            ArrayList<TtyFile> ttyFileArrayList = new ArrayList<>();
-            for (File tty : ttyFiles) {
-                if (!tty.isDirectory() && tty.canRead()) {
-                    String name = tty.getName();
-                    if (name.startsWith("tty") && name.length() > 3) {
-                        Log.d(TAG, "----------------" + tty.getName() + " isFile=" + tty.isFile() + " r/w=" + tty.canRead() + "/" + tty.canWrite());
-                        TtyFile ttyFile = new TtyFile("/dev/" + name, tty.canWrite());
-                        ttyFileArrayList.add(ttyFile);
-                    }
-                }
-            }
-            if (ttyFileArrayList.size() > 0) mHandler.obtainMessage(2, ttyFileArrayList).sendToTarget();
+            //首次枚举后结果缓存在serialPortFinder中，之后的onStart直接取缓存
+            List<SerialPortFinder.Device> devices = serialPortFinder.getDevices();
+            if (devices.isEmpty()) mHandler.obtainMessage(1, "设备串口为空").sendToTarget();
+            else mHandler.obtainMessage(2, devices).sendToTarget();
         }).start();
+        try {
+            //USB转串口拔插后自动更新列表
+            serialPortFinder.startWatching(devices -> mHandler.obtainMessage(2, devices).sendToTarget());
+        } catch (IOException | IllegalStateException e) {
+            Log.w(TAG, "无法监视串口设备变化", e);
+        }
     }
 
-    private void showTtyList(ArrayList<TtyFile> ttyFileArrayList) {
-        adapter.setItems(ttyFileArrayList);
+    private void showTtyList(List<SerialPortFinder.Device> devices) {
+        adapter.setItems(devices);
         adapter.notifyDataSetChanged();
     }
 
-    private static class TtyFile {
-        private String name;
-        private boolean canWrite;
-
-        public String getName() {
-            return name;
-        }
-
-        public boolean isCanWrite() {
-            return canWrite;
-        }
-
-        public TtyFile(String name, boolean canWrite) {
-            this.name = name;
-            this.canWrite = canWrite;
-        }
-    }
-
-    private static class TtyAdapter<T> extends BaseAdapter {
-        private ArrayList<TtyFile> ttyFileList;
+    private static class TtyAdapter extends BaseAdapter {
+        private List<SerialPortFinder.Device> devices;
 
         @Override
         public int getCount() {
-            if (ttyFileList == null) return 0;
-            return ttyFileList.size();
+            if (devices == null) return 0;
+            return devices.size();
         }
 
         @Override
         public Object getItem(int i) {
-            if (ttyFileList == null) return null;
-            return ttyFileList.get(i);
+            if (devices == null) return null;
+            return devices.get(i);
         }
 
         @Override
@@ -449,13 +383,13 @@ public class ActivityMain extends Activity {
             view = _LayoutInflater.inflate(R.layout.layout_spinner_tty, null);
             if (view != null) {
                 TextView textView = (TextView) view.findViewById(R.id.textViewLineName);
-                textView.setText(((TtyFile) ttyFileList.get(i)).getName());
+                textView.setText(devices.get(i).getFile().getPath());
             }
             return view;
         }
 
-        public void setItems(ArrayList<TtyFile> ttyFileArrayList) {
-            this.ttyFileList = ttyFileArrayList;
+        public void setItems(List<SerialPortFinder.Device> devices) {
+            this.devices = devices;
         }
     }
 
@@ -469,8 +403,8 @@ public class ActivityMain extends Activity {
                 Log.e(TAG, "错误：" + message.obj);
                 break;
             case 2:
-                ArrayList<TtyFile> ttyFileArrayList = (ArrayList<TtyFile>) message.obj;
-                showTtyList(ttyFileArrayList);
+                List<SerialPortFinder.Device> devices = (List<SerialPortFinder.Device>) message.obj;
+                showTtyList(devices);
                 break;
             case 3:
                 switchOpenClose.setChecked(false);
@@ -478,20 +412,6 @@ public class ActivityMain extends Activity {
             case 4:
                 switchSend.setChecked(false);
                 break;
-            case 5:
-                if (textViewReceiveMessage.getLineCount() > 10) textViewReceiveMessage.setText("");
-                else if (textViewReceiveMessage.getLineCount() != 0) textViewReceiveMessage.append("\n");
-                textViewReceiveMessage.append(String.valueOf(message.obj));
-                break;
-            case 6:
-                textViewReceiveCount.setText(String.valueOf(message.obj));
-                break;
-            case 7:
-                textViewReceiveCountMatch.setText(String.valueOf(message.obj));
-                break;
-            case 8:
-                textViewReceiveMessage.setText("");
-                break;
             case 9:
                 ((TextView) findViewById(R.id.textViewSendShow)).setText(String.valueOf(message.arg1));
                 break;
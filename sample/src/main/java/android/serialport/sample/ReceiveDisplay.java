@@ -0,0 +1,147 @@
+package android.serialport.sample;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.widget.TextView;
+
+import com.google.common.io.BaseEncoding;
+
+import java.util.Locale;
+
+/**
+ * 接收显示节流：处理线程只做计数和追加，主线程按帧率上限合并刷新
+ * <p>
+ * 滚动缓冲只保留最近{@link #MAX_LINES}行，每行最多{@link #MAX_LINE_BYTES}字节，行槽预先分配、循环复用，处理线程上不产生垃圾；
+ * 十六进制编码推迟到刷新时只对这些行做
+ */
+final class ReceiveDisplay {
+
+    private static final long MIN_INTERVAL_MS = 33;
+    private static final long RATE_INTERVAL_MS = 1000;
+    static final int MAX_LINES = 20;
+    static final int MAX_LINE_BYTES = 128;
+
+    private static final class Line {
+        final byte[] bytes = new byte[MAX_LINE_BYTES];
+        int copied;
+        int length;
+        boolean hex;
+    }
+
+    private final Handler handler;
+    private final TextView messageView, countView, matchView;
+    private final Runnable publish = this::publish;
+
+    //以下字段由处理线程写、主线程读，都在this上同步
+    private final Line[] lines = new Line[MAX_LINES];
+    private int firstLine;
+    private int lineCount;
+    private long receivedBytes;
+    private long frames;
+    private boolean scheduled;
+    private long lastPublishMs;
+
+    //以下只在主线程访问
+    private long rateSinceMs;
+    private long rateSinceBytes;
+    private String rateText = "";
+    private final StringBuilder text = new StringBuilder(MAX_LINES * (MAX_LINE_BYTES * 2 + 16));
+
+    ReceiveDisplay(Handler handler, TextView messageView, TextView countView, TextView matchView) {
+        this.handler = handler;
+        this.messageView = messageView;
+        this.countView = countView;
+        this.matchView = matchView;
+        for (int i = 0; i < MAX_LINES; i++) lines[i] = new Line();
+    }
+
+    /**
+     * 累加收到的字节数
+     */
+    synchronized void addReceived(int length) {
+        receivedBytes += length;
+        schedule();
+    }
+
+    /**
+     * 追加一帧到滚动缓冲，只拷贝显示得下的部分；buffer在返回后可以复用
+     *
+     * @param hex 是否以十六进制显示
+     */
+    synchronized void addFrame(byte[] buffer, int offset, int length, boolean hex) {
+        frames++;
+        Line line;
+        if (lineCount == MAX_LINES) {
+            //覆盖最旧的一行
+            line = lines[firstLine];
+            firstLine = (firstLine + 1) % MAX_LINES;
+        } else {
+            line = lines[(firstLine + lineCount++) % MAX_LINES];
+        }
+        line.copied = Math.min(length, MAX_LINE_BYTES);
+        System.arraycopy(buffer, offset, line.bytes, 0, line.copied);
+        line.length = length;
+        line.hex = hex;
+        schedule();
+    }
+
+    /**
+     * 清空滚动缓冲，计数不变
+     */
+    synchronized void clearLines() {
+        lineCount = 0;
+        schedule();
+    }
+
+    /**
+     * 清空计数与滚动缓冲，重新打开串口时调用
+     */
+    synchronized void reset() {
+        lineCount = 0;
+        receivedBytes = 0;
+        frames = 0;
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled) return;
+        scheduled = true;
+        long delay = lastPublishMs + MIN_INTERVAL_MS - SystemClock.uptimeMillis();
+        handler.postDelayed(publish, Math.max(0, delay));
+    }
+
+    private void publish() {
+        long bytes, frameCount;
+        text.setLength(0);
+        synchronized (this) {
+            scheduled = false;
+            lastPublishMs = SystemClock.uptimeMillis();
+            bytes = receivedBytes;
+            frameCount = frames;
+            //行槽会被处理线程复用，编码要在锁内完成；最多几KB，耗时可以忽略
+            for (int i = 0; i < lineCount; i++) {
+                Line line = lines[(firstLine + i) % MAX_LINES];
+                if (i > 0) text.append('\n');
+                if (line.hex) text.append(BaseEncoding.base16().encode(line.bytes, 0, line.copied));
+                else text.append(new String(line.bytes, 0, line.copied));
+                if (line.length > line.copied) text.append("…(").append(line.length).append(')');
+            }
+        }
+        messageView.setText(text);
+        long now = lastPublishMs;
+        if (bytes < rateSinceBytes) {
+            rateSinceMs = now;
+            rateSinceBytes = bytes;
+            rateText = "";
+        } else if (now - rateSinceMs >= RATE_INTERVAL_MS) {
+            if (rateSinceMs != 0) {
+                double kbps = (bytes - rateSinceBytes) * 1000.0 / 1024 / (now - rateSinceMs);
+                rateText = String.format(Locale.US, " (%.1f KB/s)", kbps);
+            }
+            rateSinceMs = now;
+            rateSinceBytes = bytes;
+        }
+        countView.setText(bytes + rateText);
+        matchView.setText(String.valueOf(frameCount));
+    }
+}
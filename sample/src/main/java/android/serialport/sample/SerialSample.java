@@ -1,20 +1,43 @@
 package android.serialport.sample;
 
+import android.serialport.SerialDataListener;
+import android.serialport.SerialFuture;
 import android.serialport.SerialPort;
+import android.serialport.SerialRecorder;
+import android.serialport.SerialRingBuffer;
+import android.serialport.SerialWriteScheduler;
+import android.serialport.SuSession;
+import android.serialport.SupervisedSerialPort;
 import android.util.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class SerialSample {
     private static final String TAG = SerialSample.class.getName();
     private SerialPort serialPort;
     private boolean ready;
-    private Thread threadRead;
+    private SupervisedSerialPort supervisedPort;
+    private SerialRingBuffer ringBuffer;
+    private Thread threadProcess;
+    private SerialRecorder recorder;
+    private SerialWriteScheduler scheduler;
+    private volatile long lastArrivalNanos;
 
-    public void open(File pathFile, int rate, INormalResponse response) throws SecurityException, IOException {
+    public void open(File pathFile, int rate, SerialDataListener listener) throws SecurityException, IOException {
+        open(pathFile, rate, null, listener);
+    }
+
+    /**
+     * @param captureDir 收发数据录制目录，null时不录制
+     * @param listener   接收回调，数据在处理线程中借出；错误与状态回调在读线程中执行
+     */
+    public void open(File pathFile, int rate, File captureDir, SerialDataListener listener) throws SecurityException, IOException {
         this.close();
         this.serialPort = new SerialPort(pathFile, rate);
+        //重连后设备节点可能恢复默认权限，由常驻su会话重新chmod，不再每次启动su
+        this.serialPort.setSuPath(SuSession.DEFAULT_SU_PATH);
         if (!pathFile.canRead()) {
             Log.w(TAG, "串口不可读，尝试修改：" + pathFile.getAbsolutePath());
             this.serialPort.makeAccessible(true, true);
@@ -25,46 +48,109 @@ public class SerialSample {
             this.serialPort.close();
             throw new SecurityException(pathFile.getAbsolutePath() + " cannot read");
         }
+        if (captureDir != null) {
+            recorder = new SerialRecorder(captureDir, pathFile.getName());
+            serialPort.setRecorder(recorder);
+        }
         ready = true;
-        threadRead = new Thread(() -> {
+        //读线程只负责把数据放进环形缓冲，处理慢时丢弃最旧的数据而不阻塞读取
+        final SerialRingBuffer ring = new SerialRingBuffer(64 * 1024, SerialRingBuffer.OverflowPolicy.DROP_OLDEST);
+        ringBuffer = ring;
+        //所有写入都经过调度线程，重连期间暂停，断开期间提交的帧在重连后写出
+        final SerialWriteScheduler s = new SerialWriteScheduler(serialPort);
+        scheduler = s;
+        //USB转串口复位或拔插后自动重连；不经它写入，所以不需要重放
+        supervisedPort = new SupervisedSerialPort(serialPort, false);
+        supervisedPort.addListener(new SerialDataListener() {
+            @Override
+            public void onData(byte[] buffer, int offset, int length, long timestampNanos) {
+                lastArrivalNanos = timestampNanos;
+                onData(buffer, offset, length);
+            }
+
+            @Override
+            public void onData(byte[] buffer, int offset, int length) {
+                try {
+                    ring.write(buffer, offset, length);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onError(IOException e) {
+                listener.onError(e);
+            }
+
+            @Override
+            public void onStateChanged(int state) {
+                if (state == STATE_RECONNECTING) s.pause();
+                else if (state == STATE_RUNNING) s.resume();
+                listener.onStateChanged(state);
+            }
+        });
+        threadProcess = new Thread(() -> {
+            byte[] processBs = new byte[4096];
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    int canRead = serialPort.getInputStream().available();
-                    if (canRead > 0) {
-                        byte[] readBs = new byte[canRead];
-                        int readC = serialPort.getInputStream().read(readBs);
-                        if (response != null && readC == canRead) response.callback(0, readBs);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    int readC = ring.read(processBs, 0, processBs.length, 100, TimeUnit.MILLISECONDS);
+                    //环形缓冲不保留块边界，交付的是其中最新一块数据的到达时刻
+                    if (readC > 0) listener.onData(processBs, 0, readC, lastArrivalNanos);
+                } catch (InterruptedException e) {
+                    break;
                 }
             }
         });
-        threadRead.start();
+        threadProcess.start();
+        s.start();
+        supervisedPort.start();
     }
 
     public boolean isReady() {
         return this.ready;
     }
 
-    public void write(byte[] bytes) throws IOException {
-        this.serialPort.getOutputStream().write(bytes);
-        this.serialPort.getOutputStream().flush();
+    /**
+     * 异步写入，走控制通道
+     */
+    public SerialFuture<Integer> write(byte[] bytes) throws IOException {
+        return send(bytes, SerialWriteScheduler.LANE_CONTROL);
+    }
+
+    /**
+     * 按优先级通道调度写入，帧间隔与线路速率由调度线程控制；重连期间排队，恢复后写出
+     *
+     * @param lane SerialWriteScheduler.LANE_*
+     */
+    public SerialFuture<Integer> send(byte[] bytes, int lane) throws IOException {
+        SerialWriteScheduler s = this.scheduler;
+        if (s == null) throw new IOException("串口未打开");
+        return s.write(bytes, lane);
+    }
+
+    /**
+     * 上一帧在线路上发完后至少空闲的时长
+     */
+    public void setFrameGap(int ms) {
+        SerialWriteScheduler s = this.scheduler;
+        if (s != null) s.setMinFrameGap(ms, TimeUnit.MILLISECONDS);
     }
 
     public void close() {
-        if (threadRead != null) threadRead.interrupt();
-        threadRead = null;
-        try {
-            this.serialPort.getInputStream().close();
-        } catch (Exception e) {
-        }
-        try {
-            this.serialPort.getOutputStream().close();
-        } catch (Exception e) {
+        if (scheduler != null) scheduler.stop();
+        scheduler = null;
+        //停止后串口已由supervisedPort关闭
+        if (supervisedPort != null) supervisedPort.stop();
+        supervisedPort = null;
+        if (threadProcess != null) threadProcess.interrupt();
+        threadProcess = null;
+        if (ringBuffer != null) {
+            Log.d(TAG, "接收缓冲最高水位：" + ringBuffer.getHighWaterMark() + " 丢弃字节：" + ringBuffer.getDroppedBytes());
         }
-        if (this.serialPort != null) this.serialPort.close();
+        ringBuffer = null;
         this.serialPort = null;
+        if (recorder != null) recorder.close();
+        recorder = null;
         this.ready = false;
     }
 }
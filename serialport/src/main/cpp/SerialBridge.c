@@ -0,0 +1,543 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#define _GNU_SOURCE
+
+#include <unistd.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <fcntl.h>
+#include <poll.h>
+#include <sys/eventfd.h>
+#include <sys/socket.h>
+#include <sys/stat.h>
+#include <jni.h>
+
+#include "SerialBridge.h"
+#include "SerialJni.h"
+
+#include "android/log.h"
+
+static const char *TAG = "serial_bridge";
+#define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
+#define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
+
+#define MAX_CLIENTS android_serialport_SerialBridge_MAX_CLIENTS
+#define CHUNK 65536
+/* Per-client backlog; a client that falls this far behind is disconnected */
+#define CLIENT_PIPE_SIZE (256 * 1024)
+/* Copy buffer for socket clients, see drainSocketClient() */
+#define STAGE_SIZE 16384
+
+struct client {
+    int fd;
+    int writable;
+    int overflowed;
+    /*
+     * The fd shares its open file description (and so O_NONBLOCK) with the
+     * caller's socket; it is only used with MSG_DONTWAIT and never spliced to.
+     */
+    int socket;
+    /* bytes waiting for this client, kept in the kernel as pipe pages */
+    int pipe[2];
+    size_t pending;
+    /* bytes taken out of the pipe but not yet accepted by a socket client */
+    size_t stageOff;
+    size_t stageLen;
+    char stage[STAGE_SIZE];
+};
+
+struct bridge {
+    int wakeFd;
+    int nullFd;
+    /* serial -> clients staging pipe, tee'd into every client pipe */
+    int outPipe[2];
+    /* clients -> serial staging pipe */
+    int inPipe[2];
+    int spliceFromSerial;
+    int spliceToSerial;
+    int clientCount;
+    struct client clients[MAX_CLIENTS];
+    uint64_t toClients;
+    uint64_t toSerial;
+    uint64_t dropped;
+    char buf[CHUNK];
+};
+
+/*
+ * Serial side failed: an errno is reported like SerialPort's own I/O errors,
+ * none means the line hung up.
+ */
+static void throwSerialFailure(JNIEnv *env, int err) {
+    if (err != 0) throwSerialPortException(env, REASON(IO), err, "serial port I/O failed");
+    else throwSerialPortException(env, REASON(HANGUP), 0, "serial port hung up");
+}
+
+static void closePipe(int p[2]) {
+    if (p[0] >= 0) close(p[0]);
+    if (p[1] >= 0) close(p[1]);
+    p[0] = p[1] = -1;
+}
+
+static int openPipe(int p[2], int size) {
+    if (pipe2(p, O_NONBLOCK | O_CLOEXEC) == -1) {
+        p[0] = p[1] = -1;
+        return -1;
+    }
+    /* best effort, capped by /proc/sys/fs/pipe-max-size */
+    if (size > 0) fcntl(p[1], F_SETPIPE_SZ, size);
+    return 0;
+}
+
+static int hasOutput(const struct client *c) {
+    return c->pending > 0 || c->stageOff < c->stageLen;
+}
+
+/* Reads from a client without relying on O_NONBLOCK, which a socket client may not have. */
+static ssize_t readClient(struct client *c, void *buf, size_t n) {
+    if (c->socket) return recv(c->fd, buf, n, MSG_DONTWAIT);
+    return read(c->fd, buf, n);
+}
+
+static struct client *findClient(struct bridge *b, int fd) {
+    int i;
+    for (i = 0; i < b->clientCount; i++) {
+        if (b->clients[i].fd == fd) return &b->clients[i];
+    }
+    return NULL;
+}
+
+/*
+ * Queues n bytes from outPipe (splice mode) or buf (copy mode) to every
+ * client pipe. A client whose pipe is full is flagged and dropped by Java.
+ */
+static void fanOut(struct bridge *b, ssize_t n, int fromPipe) {
+    int i;
+    for (i = 0; i < b->clientCount; i++) {
+        struct client *c = &b->clients[i];
+        ssize_t m;
+        if (c->overflowed) continue;
+        if (fromPipe) m = tee(b->outPipe[0], c->pipe[1], (size_t) n, SPLICE_F_NONBLOCK);
+        else m = write(c->pipe[1], b->buf, (size_t) n);
+        if (m < n) {
+            LOGE("client fd %d fell behind, dropping it", c->fd);
+            c->overflowed = 1;
+            continue;
+        }
+        c->pending += (size_t) n;
+    }
+    if (b->clientCount == 0) b->dropped += (uint64_t) n;
+    else b->toClients += (uint64_t) n;
+    /* tee only duplicates; release the staged pages without copying them */
+    if (fromPipe) splice(b->outPipe[0], NULL, b->nullFd, NULL, (size_t) n, SPLICE_F_NONBLOCK);
+}
+
+/*
+ * Moves one chunk from the serial port to the client pipes.
+ * Returns 0 on success and -1 with errno set on a serial error.
+ */
+static int pumpFromSerial(struct bridge *b, int serialFd) {
+    ssize_t n;
+    if (b->spliceFromSerial) {
+        n = splice(serialFd, NULL, b->outPipe[1], NULL, CHUNK, SPLICE_F_NONBLOCK | SPLICE_F_MOVE);
+        if (n > 0) {
+            fanOut(b, n, 1);
+            return 0;
+        }
+        if (n == -1 && errno == EINVAL) {
+            /* many kernels have no splice_read for ttys since default_file_splice_read went away in 5.10 */
+            LOGD("splice from serial not supported, copying instead");
+            b->spliceFromSerial = 0;
+        } else if (n == -1 && (errno == EAGAIN || errno == EINTR)) {
+            return 0;
+        } else {
+            if (n == 0) errno = 0;
+            return -1;
+        }
+    }
+    n = read(serialFd, b->buf, CHUNK);
+    if (n > 0) {
+        fanOut(b, n, 0);
+        return 0;
+    }
+    if (n == -1 && (errno == EAGAIN || errno == EINTR)) return 0;
+    if (n == 0) errno = 0;
+    return -1;
+}
+
+static int writeAll(int fd, const char *p, size_t n) {
+    while (n > 0) {
+        ssize_t w = write(fd, p, n);
+        if (w == -1) {
+            if (errno == EINTR) continue;
+            if (errno == EAGAIN) {
+                struct pollfd pfd;
+                pfd.fd = fd;
+                pfd.events = POLLOUT;
+                pfd.revents = 0;
+                poll(&pfd, 1, -1);
+                continue;
+            }
+            return -1;
+        }
+        p += w;
+        n -= (size_t) w;
+    }
+    return 0;
+}
+
+/*
+ * Forwards what a client sent. Read-only clients have their input discarded.
+ * Returns 1 when the client closed, 0 on success and -1 on a serial error.
+ */
+static int pumpFromClient(struct bridge *b, struct client *c, int serialFd) {
+    ssize_t n;
+    if (!c->writable) {
+        n = readClient(c, b->buf, CHUNK);
+        if (n == -1 && (errno == EAGAIN || errno == EINTR)) return 0;
+        return n > 0 ? 0 : 1;
+    }
+    if (b->spliceToSerial) {
+        ssize_t moved = 0;
+        n = splice(c->fd, NULL, b->inPipe[1], NULL, CHUNK, SPLICE_F_NONBLOCK | SPLICE_F_MOVE);
+        if (n == -1 && (errno == EAGAIN || errno == EINTR)) return 0;
+        if (n <= 0) return 1;
+        while (moved < n) {
+            ssize_t m = splice(b->inPipe[0], NULL, serialFd, NULL, (size_t) (n - moved), SPLICE_F_MOVE);
+            if (m > 0) {
+                moved += m;
+                continue;
+            }
+            if (m == -1 && errno == EINTR) continue;
+            if (m == -1 && errno == EINVAL) {
+                LOGD("splice to serial not supported, copying instead");
+                b->spliceToSerial = 0;
+                break;
+            }
+            return -1;
+        }
+        /* drain whatever could not be spliced through the copy path */
+        while (moved < n) {
+            ssize_t r = read(b->inPipe[0], b->buf, (size_t) (n - moved));
+            if (r <= 0) break;
+            if (writeAll(serialFd, b->buf, (size_t) r)) return -1;
+            moved += r;
+        }
+        b->toSerial += (uint64_t) moved;
+        return 0;
+    }
+    n = readClient(c, b->buf, CHUNK);
+    if (n == -1 && (errno == EAGAIN || errno == EINTR)) return 0;
+    if (n <= 0) return 1;
+    if (writeAll(serialFd, b->buf, (size_t) n)) return -1;
+    b->toSerial += (uint64_t) n;
+    return 0;
+}
+
+/*
+ * splice() into a socket blocks unless the socket itself is O_NONBLOCK, which
+ * would change the caller's descriptor, so socket clients get a copy through
+ * the stage buffer and send(MSG_DONTWAIT) instead.
+ */
+static int drainSocketClient(struct client *c) {
+    for (;;) {
+        ssize_t n;
+        if (c->stageOff == c->stageLen) {
+            if (c->pending == 0) return 0;
+            n = read(c->pipe[0], c->stage, c->pending < STAGE_SIZE ? c->pending : STAGE_SIZE);
+            if (n == -1 && errno == EINTR) continue;
+            if (n <= 0) return 1;
+            c->pending -= (size_t) n;
+            c->stageOff = 0;
+            c->stageLen = (size_t) n;
+        }
+        n = send(c->fd, c->stage + c->stageOff, c->stageLen - c->stageOff, MSG_DONTWAIT | MSG_NOSIGNAL);
+        if (n > 0) {
+            c->stageOff += (size_t) n;
+            continue;
+        }
+        if (n == -1 && errno == EINTR) continue;
+        if (n == -1 && errno == EAGAIN) return 0;
+        return 1;
+    }
+}
+
+/*
+ * Sends queued bytes to a client. Returns 1 when the client is gone.
+ */
+static int drainClient(struct client *c) {
+    if (c->socket) return drainSocketClient(c);
+    while (c->pending > 0) {
+        ssize_t n = splice(c->pipe[0], NULL, c->fd, NULL, c->pending, SPLICE_F_NONBLOCK | SPLICE_F_MOVE);
+        if (n > 0) {
+            c->pending -= (size_t) n;
+            continue;
+        }
+        if (n == -1 && errno == EINTR) continue;
+        if (n == -1 && errno == EAGAIN) return 0;
+        return 1;
+    }
+    return 0;
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeCreate
+ * Signature: (Z)J
+ */
+JNIEXPORT jlong JNICALL Java_android_serialport_SerialBridge_nativeCreate
+        (JNIEnv *env, jclass clazz, jboolean useSplice) {
+    struct bridge *b = calloc(1, sizeof(struct bridge));
+    if (b == NULL) {
+        throwIOException(env, "out of memory");
+        return 0;
+    }
+    b->outPipe[0] = b->outPipe[1] = b->inPipe[0] = b->inPipe[1] = -1;
+    b->wakeFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    b->nullFd = open("/dev/null", O_WRONLY | O_CLOEXEC);
+    if (b->wakeFd == -1 || b->nullFd == -1
+        || openPipe(b->outPipe, CHUNK) || openPipe(b->inPipe, CHUNK)) {
+        int err = errno;
+        LOGE("cannot create bridge: %s", strerror(err));
+        if (b->wakeFd >= 0) close(b->wakeFd);
+        if (b->nullFd >= 0) close(b->nullFd);
+        closePipe(b->outPipe);
+        closePipe(b->inPipe);
+        free(b);
+        throwSerialPortException(env, REASON(IO), err, "cannot create bridge");
+        return 0;
+    }
+    b->spliceFromSerial = useSplice;
+    b->spliceToSerial = useSplice;
+    return (jlong) (intptr_t) b;
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeDup
+ * Signature: (Ljava/io/FileDescriptor;)I
+ *
+ * Never changes the file status flags the caller's descriptor shares with
+ * the copy. Sockets are dup'ed and used with MSG_DONTWAIT; anything else is
+ * reopened through /proc/self/fd with the caller's access mode to get a
+ * private O_NONBLOCK description. Pipes are rejected: reopening one end
+ * read-write would make the bridge read back what it writes and hold a
+ * write end that keeps it from ever seeing EOF.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialBridge_nativeDup
+        (JNIEnv *env, jclass clazz, jobject fileDescriptor) {
+    int fd = getFileDescriptorValue(env, fileDescriptor);
+    struct stat st;
+    char path[32];
+    int flags, copy;
+    if (fstat(fd, &st) == -1) {
+        throwSerialPortException(env, REASON(IO), errno, "fstat() failed");
+        return -1;
+    }
+    if (S_ISFIFO(st.st_mode)) {
+        throwIOException(env, "pipes cannot be bridge clients, use a socket pair");
+        return -1;
+    }
+    if (S_ISSOCK(st.st_mode)) {
+        copy = fcntl(fd, F_DUPFD_CLOEXEC, 0);
+    } else {
+        flags = fcntl(fd, F_GETFL);
+        if (flags == -1) {
+            throwSerialPortException(env, REASON(IO), errno, "fcntl(F_GETFL) failed");
+            return -1;
+        }
+        snprintf(path, sizeof(path), "/proc/self/fd/%d", fd);
+        copy = open(path, (flags & O_ACCMODE) | O_NONBLOCK | O_CLOEXEC | O_NOCTTY);
+    }
+    if (copy == -1) {
+        throwSerialPortException(env, REASON(IO), errno, "cannot duplicate client fd");
+        return -1;
+    }
+    return copy;
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeAddClient
+ * Signature: (JIZ)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialBridge_nativeAddClient
+        (JNIEnv *env, jclass clazz, jlong handle, jint fd, jboolean writable) {
+    struct bridge *b = (struct bridge *) (intptr_t) handle;
+    struct client *c;
+    struct stat st;
+    if (b->clientCount == MAX_CLIENTS) {
+        throwIOException(env, "too many bridge clients");
+        return;
+    }
+    c = &b->clients[b->clientCount];
+    memset(c, 0, sizeof(*c));
+    if (openPipe(c->pipe, CLIENT_PIPE_SIZE)) {
+        throwSerialPortException(env, REASON(IO), errno, "pipe2() failed");
+        return;
+    }
+    c->fd = fd;
+    c->writable = writable;
+    c->socket = fstat(fd, &st) == 0 && S_ISSOCK(st.st_mode);
+    b->clientCount++;
+    LOGD("client fd %d added, writable=%d", fd, writable);
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeRemoveClient
+ * Signature: (JI)V
+ *
+ * Closes the client's descriptor, whether or not it had been added.
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialBridge_nativeRemoveClient
+        (JNIEnv *env, jclass clazz, jlong handle, jint fd) {
+    struct bridge *b = (struct bridge *) (intptr_t) handle;
+    struct client *c = findClient(b, fd);
+    if (c != NULL) {
+        closePipe(c->pipe);
+        *c = b->clients[--b->clientCount];
+    }
+    close(fd);
+    LOGD("client fd %d removed", fd);
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeRun
+ * Signature: (JI)I
+ *
+ * Pumps data until woken up (returns -1) or a client disconnects or falls
+ * behind (returns its fd). Throws when the serial port fails.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialBridge_nativeRun
+        (JNIEnv *env, jclass clazz, jlong handle, jint serialFd) {
+    struct bridge *b = (struct bridge *) (intptr_t) handle;
+    struct pollfd fds[MAX_CLIENTS + 2];
+    int i, ret;
+
+    if (serialFd < 0) {
+        throwIOException(env, "serial port is not open");
+        return -1;
+    }
+    for (;;) {
+        for (i = 0; i < b->clientCount; i++) {
+            if (b->clients[i].overflowed) return b->clients[i].fd;
+        }
+        fds[0].fd = serialFd;
+        fds[0].events = POLLIN;
+        fds[1].fd = b->wakeFd;
+        fds[1].events = POLLIN;
+        for (i = 0; i < b->clientCount; i++) {
+            fds[i + 2].fd = b->clients[i].fd;
+            fds[i + 2].events = POLLIN | (hasOutput(&b->clients[i]) ? POLLOUT : 0);
+        }
+        for (i = 0; i < b->clientCount + 2; i++) fds[i].revents = 0;
+
+        ret = poll(fds, (nfds_t) (b->clientCount + 2), -1);
+        if (ret == -1) {
+            if (errno == EINTR) continue;
+            throwSerialPortException(env, REASON(IO), errno, "poll() failed");
+            return -1;
+        }
+        if (fds[1].revents & POLLIN) {
+            uint64_t value;
+            read(b->wakeFd, &value, sizeof(value));
+            return -1;
+        }
+        if (fds[0].revents & POLLIN) {
+            if (pumpFromSerial(b, serialFd)) {
+                throwSerialFailure(env, errno);
+                return -1;
+            }
+        } else if (fds[0].revents & (POLLHUP | POLLERR | POLLNVAL)) {
+            throwSerialFailure(env, 0);
+            return -1;
+        }
+        for (i = 0; i < b->clientCount; i++) {
+            struct client *c = &b->clients[i];
+            short revents = fds[i + 2].revents;
+            if (revents & POLLOUT) {
+                if (drainClient(c)) return c->fd;
+            }
+            if (revents & POLLIN) {
+                ret = pumpFromClient(b, c, serialFd);
+                if (ret < 0) {
+                    throwSerialFailure(env, errno);
+                    return -1;
+                }
+                if (ret > 0) return c->fd;
+            } else if (revents & (POLLHUP | POLLERR | POLLNVAL)) {
+                return c->fd;
+            }
+        }
+        /* try to send what was just queued without another poll round */
+        for (i = 0; i < b->clientCount; i++) {
+            if (hasOutput(&b->clients[i]) && drainClient(&b->clients[i])) return b->clients[i].fd;
+        }
+    }
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeWakeup
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialBridge_nativeWakeup
+        (JNIEnv *env, jclass clazz, jlong handle) {
+    struct bridge *b = (struct bridge *) (intptr_t) handle;
+    uint64_t value = 1;
+    write(b->wakeFd, &value, sizeof(value));
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeGetCounters
+ * Signature: (J[J)V
+ *
+ * Fills bytes sent to clients, bytes written to the serial port and bytes
+ * read while no client was connected.
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialBridge_nativeGetCounters
+        (JNIEnv *env, jclass clazz, jlong handle, jlongArray counters) {
+    struct bridge *b = (struct bridge *) (intptr_t) handle;
+    jlong out[3];
+    out[0] = (jlong) b->toClients;
+    out[1] = (jlong) b->toSerial;
+    out[2] = (jlong) b->dropped;
+    (*env)->SetLongArrayRegion(env, counters, 0, 3, out);
+}
+
+/*
+ * Class:     android_serialport_SerialBridge
+ * Method:    nativeDestroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialBridge_nativeDestroy
+        (JNIEnv *env, jclass clazz, jlong handle) {
+    struct bridge *b = (struct bridge *) (intptr_t) handle;
+    int i;
+    for (i = 0; i < b->clientCount; i++) {
+        closePipe(b->clients[i].pipe);
+        close(b->clients[i].fd);
+    }
+    closePipe(b->outPipe);
+    closePipe(b->inPipe);
+    close(b->wakeFd);
+    close(b->nullFd);
+    free(b);
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <unistd.h>
+#include <string.h>
+#include <errno.h>
+#include <stdint.h>
+#include <time.h>
+#include <poll.h>
+#include <sys/inotify.h>
+#include <sys/eventfd.h>
+#include <jni.h>
+
+#include "SerialDeviceWatcher.h"
+#include "SerialJni.h"
+
+#include "android/log.h"
+
+static const char *TAG = "serial_device_watcher";
+#define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
+#define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
+
+/* Device nodes show up with IN_CREATE; ueventd fixes permissions afterwards (IN_ATTRIB) */
+#define WATCH_MASK (IN_CREATE | IN_ATTRIB | IN_MOVED_TO | IN_DELETE | IN_MOVED_FROM)
+
+static int64_t monotonicMs(void) {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t) ts.tv_sec * 1000 + ts.tv_nsec / 1000000;
+}
+
+/*
+ * Class:     android_serialport_SerialDeviceWatcher
+ * Method:    nativeCreate
+ * Signature: (Ljava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialDeviceWatcher_nativeCreate
+        (JNIEnv *env, jclass clazz, jstring directory) {
+    const char *dir;
+    int fd = inotify_init1(IN_NONBLOCK | IN_CLOEXEC);
+    if (fd == -1) {
+        int err = errno;
+        LOGE("inotify_init1() failed: %s", strerror(err));
+        throwSerialPortException(env, REASON(IO), err, "inotify_init1() failed");
+        return -1;
+    }
+    dir = (*env)->GetStringUTFChars(env, directory, NULL);
+    if (inotify_add_watch(fd, dir, WATCH_MASK) == -1) {
+        int err = errno;
+        LOGE("inotify_add_watch(%s) failed: %s", dir, strerror(err));
+        (*env)->ReleaseStringUTFChars(env, directory, dir);
+        close(fd);
+        throwSerialPortException(env, err == ENOENT || err == ENOTDIR ? REASON(NOT_FOUND) : REASON(IO), err,
+                                 "inotify_add_watch() failed");
+        return -1;
+    }
+    (*env)->ReleaseStringUTFChars(env, directory, dir);
+    return fd;
+}
+
+/*
+ * Class:     android_serialport_SerialDeviceWatcher
+ * Method:    nativeCreateWakeup
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialDeviceWatcher_nativeCreateWakeup
+        (JNIEnv *env, jclass clazz) {
+    int wakeFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if (wakeFd == -1) {
+        int err = errno;
+        LOGE("eventfd() failed: %s", strerror(err));
+        throwSerialPortException(env, REASON(IO), err, "eventfd() failed");
+    }
+    return wakeFd;
+}
+
+/*
+ * Class:     android_serialport_SerialDeviceWatcher
+ * Method:    nativeWait
+ * Signature: (IILjava/lang/String;I)I
+ *
+ * Waits for an event on the given entry name (any entry when name is null).
+ * Returns 1 when such an event arrived, 0 on timeout and -1 when woken up.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialDeviceWatcher_nativeWait
+        (JNIEnv *env, jclass clazz, jint inotifyFd, jint wakeFd, jstring name, jint timeoutMs) {
+    char buf[4096] __attribute__ ((aligned(__alignof__(struct inotify_event))));
+    const char *target = name == NULL ? NULL : (*env)->GetStringUTFChars(env, name, NULL);
+    int64_t deadline = timeoutMs < 0 ? -1 : monotonicMs() + timeoutMs;
+    struct pollfd fds[2];
+    jint result = 0;
+
+    fds[0].fd = inotifyFd;
+    fds[0].events = POLLIN;
+    fds[1].fd = wakeFd;
+    fds[1].events = POLLIN;
+    for (;;) {
+        int wait = -1;
+        int ret;
+        ssize_t len;
+        char *p;
+
+        if (deadline >= 0) {
+            int64_t left = deadline - monotonicMs();
+            if (left <= 0) break;
+            wait = (int) left;
+        }
+        fds[0].revents = 0;
+        fds[1].revents = 0;
+        ret = poll(fds, 2, wait);
+        if (ret == -1) {
+            if (errno == EINTR) continue;
+            throwSerialPortException(env, REASON(IO), errno, "poll() failed");
+            break;
+        }
+        if (ret == 0) break;
+        if (fds[1].revents & POLLIN) {
+            uint64_t value;
+            read(wakeFd, &value, sizeof(value));
+            result = -1;
+            break;
+        }
+        len = read(inotifyFd, buf, sizeof(buf));
+        if (len <= 0) continue;
+        for (p = buf; p < buf + len; p += sizeof(struct inotify_event) + ((struct inotify_event *) p)->len) {
+            struct inotify_event *ev = (struct inotify_event *) p;
+            if (ev->mask & IN_Q_OVERFLOW) {
+                /* events were lost, let the caller re-check */
+                result = 1;
+            } else if (target == NULL || (ev->len > 0 && strcmp(ev->name, target) == 0)) {
+                LOGD("inotify event 0x%x on %s", ev->mask, ev->len > 0 ? ev->name : "");
+                result = 1;
+            }
+        }
+        if (result != 0) break;
+    }
+    if (target != NULL) (*env)->ReleaseStringUTFChars(env, name, target);
+    return result;
+}
+
+/*
+ * Class:     android_serialport_SerialDeviceWatcher
+ * Method:    nativeWakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialDeviceWatcher_nativeWakeup
+        (JNIEnv *env, jclass clazz, jint wakeFd) {
+    uint64_t value = 1;
+    write(wakeFd, &value, sizeof(value));
+}
+
+/*
+ * Class:     android_serialport_SerialDeviceWatcher
+ * Method:    nativeClose
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialDeviceWatcher_nativeClose
+        (JNIEnv *env, jclass clazz, jint fd) {
+    LOGD("close(fd = %d)", fd);
+    close(fd);
+}
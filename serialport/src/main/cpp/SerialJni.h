@@ -0,0 +1,34 @@
+/*
+ * Helpers shared by the native sources of libserial_port. They use the class,
+ * field and method IDs that SerialPort.c resolves once in JNI_OnLoad, so no
+ * FindClass/GetMethodID happens on the error paths.
+ */
+
+#ifndef _Included_android_serialport_SerialJni
+#define _Included_android_serialport_SerialJni
+
+#include <jni.h>
+
+#include "SerialPortException.h"
+
+#define REASON(name) android_serialport_SerialPortException_REASON_##name
+
+#define SERIAL_HIDDEN __attribute__ ((visibility("hidden")))
+
+/*
+ * Throws java.io.IOException for misuse that has no errno, e.g. a closed port.
+ */
+SERIAL_HIDDEN void throwIOException(JNIEnv *env, const char *msg);
+
+/*
+ * Throws android.serialport.SerialPortException carrying a REASON_* constant
+ * and the errno (0 when there is none). The message is "what: strerror(err)".
+ */
+SERIAL_HIDDEN void throwSerialPortException(JNIEnv *env, jint reason, int err, const char *what);
+
+/*
+ * Returns the int held by a java.io.FileDescriptor.
+ */
+SERIAL_HIDDEN int getFileDescriptorValue(JNIEnv *env, jobject fileDescriptor);
+
+#endif
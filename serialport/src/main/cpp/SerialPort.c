@@ -16,21 +16,167 @@
 
 #include <termios.h>
 #include <unistd.h>
+#include <time.h>
 #include <sys/types.h>
 #include <sys/stat.h>
 #include <fcntl.h>
+#include <stdio.h>
 #include <string.h>
+#include <errno.h>
+#include <poll.h>
+#include <sys/eventfd.h>
+#include <sys/ioctl.h>
+#include <linux/serial.h>
 #include <jni.h>
 
 #include "SerialPort.h"
+#include "SerialJni.h"
 
 #include "android/log.h"
 
+/*
+ * Name of the int field inside java.io.FileDescriptor: "descriptor" on
+ * Android, "fd" on desktop JVMs (used by the benchmark host build).
+ */
+#ifndef FILE_DESCRIPTOR_FIELD
+#define FILE_DESCRIPTOR_FIELD "descriptor"
+#endif
+
 static const char *TAG = "serial_port";
 #define LOGI(fmt, args...) __android_log_print(ANDROID_LOG_INFO,  TAG, fmt, ##args)
 #define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
 #define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
 
+/*
+ * Kernel struct termios2, declared here because <asm/termbits.h> clashes with
+ * <termios.h>. The layout matches arm, arm64, x86 and x86_64.
+ */
+struct serial_termios2 {
+    tcflag_t c_iflag;
+    tcflag_t c_oflag;
+    tcflag_t c_cflag;
+    tcflag_t c_lflag;
+    cc_t c_line;
+    cc_t c_cc[19];
+    speed_t c_ispeed;
+    speed_t c_ospeed;
+};
+
+#define SERIAL_TCGETS2 _IOR('T', 0x2A, struct serial_termios2)
+#define SERIAL_TCSETS2 _IOW('T', 0x2B, struct serial_termios2)
+#ifndef BOTHER
+#define BOTHER 0010000
+#endif
+
+/* Older NDK headers lack the RS-485 ioctls; the numbers are the same on all arches. */
+#ifndef TIOCGRS485
+#define TIOCGRS485 0x542E
+#endif
+#ifndef TIOCSRS485
+#define TIOCSRS485 0x542F
+#endif
+
+/*
+ * Class, field and method IDs resolved once in JNI_OnLoad instead of on every
+ * read, write and close. JNI_OnLoad runs with the library's class loader, so
+ * the lookups also work for threads later attached from native code.
+ */
+static struct {
+    jclass fileDescriptorClass;
+    jmethodID fileDescriptorInit;
+    jfieldID fileDescriptorDescriptor;
+    jfieldID serialPortFd;
+    jfieldID serialPortWakeFd;
+    jfieldID serialPortLastReadNanos;
+    jclass ioExceptionClass;
+    jclass serialPortExceptionClass;
+    jmethodID serialPortExceptionInit;
+} gIds;
+
+static jclass findGlobalClass(JNIEnv *env, const char *name) {
+    jclass local = (*env)->FindClass(env, name);
+    jclass global;
+    if (local == NULL) return NULL;
+    global = (*env)->NewGlobalRef(env, local);
+    (*env)->DeleteLocalRef(env, local);
+    return global;
+}
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+    JNIEnv *env;
+    jclass serialPortClass;
+
+    if ((*vm)->GetEnv(vm, (void **) &env, JNI_VERSION_1_6) != JNI_OK) return JNI_ERR;
+
+    gIds.fileDescriptorClass = findGlobalClass(env, "java/io/FileDescriptor");
+    if (gIds.fileDescriptorClass == NULL) return JNI_ERR;
+    gIds.fileDescriptorInit = (*env)->GetMethodID(env, gIds.fileDescriptorClass, "<init>", "()V");
+    gIds.fileDescriptorDescriptor = (*env)->GetFieldID(env, gIds.fileDescriptorClass,
+                                                       FILE_DESCRIPTOR_FIELD, "I");
+    if (gIds.fileDescriptorInit == NULL || gIds.fileDescriptorDescriptor == NULL) return JNI_ERR;
+
+    serialPortClass = (*env)->FindClass(env, "android/serialport/SerialPort");
+    if (serialPortClass == NULL) return JNI_ERR;
+    gIds.serialPortFd = (*env)->GetFieldID(env, serialPortClass, "mFd", "Ljava/io/FileDescriptor;");
+    gIds.serialPortWakeFd = (*env)->GetFieldID(env, serialPortClass, "mWakeFd", "I");
+    gIds.serialPortLastReadNanos = (*env)->GetFieldID(env, serialPortClass, "mLastReadNanos", "J");
+    (*env)->DeleteLocalRef(env, serialPortClass);
+    if (gIds.serialPortFd == NULL || gIds.serialPortWakeFd == NULL
+        || gIds.serialPortLastReadNanos == NULL) return JNI_ERR;
+
+    gIds.ioExceptionClass = findGlobalClass(env, "java/io/IOException");
+    gIds.serialPortExceptionClass = findGlobalClass(env, "android/serialport/SerialPortException");
+    if (gIds.ioExceptionClass == NULL || gIds.serialPortExceptionClass == NULL) return JNI_ERR;
+    gIds.serialPortExceptionInit = (*env)->GetMethodID(env, gIds.serialPortExceptionClass, "<init>",
+                                                       "(Ljava/lang/String;II)V");
+    if (gIds.serialPortExceptionInit == NULL) return JNI_ERR;
+
+    return JNI_VERSION_1_6;
+}
+
+void throwIOException(JNIEnv *env, const char *msg) {
+    (*env)->ThrowNew(env, gIds.ioExceptionClass, msg);
+}
+
+void throwSerialPortException(JNIEnv *env, jint reason, int err, const char *what) {
+    char msg[320];
+    jstring message;
+    jobject exception;
+
+    if (err != 0) snprintf(msg, sizeof(msg), "%s: %s", what, strerror(err));
+    else snprintf(msg, sizeof(msg), "%s", what);
+    message = (*env)->NewStringUTF(env, msg);
+    if (message == NULL) return;
+    exception = (*env)->NewObject(env, gIds.serialPortExceptionClass, gIds.serialPortExceptionInit,
+                                  message, reason, (jint) err);
+    (*env)->DeleteLocalRef(env, message);
+    if (exception != NULL) (*env)->Throw(env, (jthrowable) exception);
+}
+
+int getFileDescriptorValue(JNIEnv *env, jobject fileDescriptor) {
+    return (*env)->GetIntField(env, fileDescriptor, gIds.fileDescriptorDescriptor);
+}
+
+static void throwErrno(JNIEnv *env, int err) {
+    throwSerialPortException(env, REASON(IO), err, "serial port I/O failed");
+}
+
+static jint openFailureReason(int err) {
+    switch (err) {
+        case EACCES:
+        case EPERM:
+            return REASON(PERMISSION_DENIED);
+        case EBUSY:
+            return REASON(BUSY);
+        case ENOENT:
+        case ENODEV:
+        case ENXIO:
+            return REASON(NOT_FOUND);
+        default:
+            return REASON(IO);
+    }
+}
+
 static speed_t getBaudrate(jint baudrate) {
     switch (baudrate) {
         case 0:
@@ -111,15 +257,16 @@ JNIEXPORT jobject JNICALL Java_android_serialport_SerialPort_open
          jint flags) {
 
     int fd;
+    int wakeFd;
     speed_t speed;
     jobject mFileDescriptor;
 
     /* Check arguments */
     {
         speed = getBaudrate(baudrate);
-        if (speed == -1) {
-            /* TODO: throw an exception */
+        if (speed == -1 && baudrate <= 0) {
             LOGE("Invalid baudrate");
+            throwSerialPortException(env, REASON(INVALID_BAUD_RATE), EINVAL, "invalid baud rate");
             return NULL;
         }
     }
@@ -131,13 +278,16 @@ JNIEXPORT jobject JNICALL Java_android_serialport_SerialPort_open
         LOGD("Opening serial port %s with flags 0x%x", path_utf, O_RDWR | flags);
         fd = open(path_utf, O_RDWR | flags);
         LOGD("open() fd = %d", fd);
-        (*env)->ReleaseStringUTFChars(env, path, path_utf);
         if (fd == -1) {
-            /* Throw an exception */
+            int err = errno;
+            char what[256];
             LOGE("Cannot open port");
-            /* TODO: throw an exception */
+            snprintf(what, sizeof(what), "cannot open %s", path_utf);
+            (*env)->ReleaseStringUTFChars(env, path, path_utf);
+            throwSerialPortException(env, openFailureReason(err), err, what);
             return NULL;
         }
+        (*env)->ReleaseStringUTFChars(env, path, path_utf);
     }
 
     /* Configure device */
@@ -145,15 +295,17 @@ JNIEXPORT jobject JNICALL Java_android_serialport_SerialPort_open
         struct termios cfg;
         LOGD("Configuring serial port");
         if (tcgetattr(fd, &cfg)) {
+            int err = errno;
             LOGE("tcgetattr() failed");
             close(fd);
-            /* TODO: throw an exception */
+            throwSerialPortException(env, REASON(CONFIGURE_FAILED), err, "tcgetattr() failed");
             return NULL;
         }
 
         cfmakeraw(&cfg);
-        cfsetispeed(&cfg, speed);
-        cfsetospeed(&cfg, speed);
+        /* Non-standard rates are set through termios2 below */
+        cfsetispeed(&cfg, speed == -1 ? B38400 : speed);
+        cfsetospeed(&cfg, speed == -1 ? B38400 : speed);
 
 
         cfg.c_cflag &= ~CSIZE;
@@ -206,25 +358,607 @@ JNIEXPORT jobject JNICALL Java_android_serialport_SerialPort_open
         }
 
         if (tcsetattr(fd, TCSANOW, &cfg)) {
+            int err = errno;
             LOGE("tcsetattr() failed");
             close(fd);
-            /* TODO: throw an exception */
+            throwSerialPortException(env, REASON(CONFIGURE_FAILED), err, "tcsetattr() failed");
+            return NULL;
+        }
+
+        if (speed == -1) {
+            struct serial_termios2 cfg2;
+            LOGD("Setting custom baudrate %d with BOTHER", baudrate);
+            if (ioctl(fd, SERIAL_TCGETS2, &cfg2) == -1) {
+                int err = errno;
+                LOGE("TCGETS2 failed");
+                close(fd);
+                throwSerialPortException(env, REASON(INVALID_BAUD_RATE), err,
+                                         "non-standard baud rate not supported");
+                return NULL;
+            }
+            cfg2.c_cflag &= ~CBAUD;
+            cfg2.c_cflag |= BOTHER;
+            cfg2.c_ispeed = (speed_t) baudrate;
+            cfg2.c_ospeed = (speed_t) baudrate;
+            if (ioctl(fd, SERIAL_TCSETS2, &cfg2) == -1) {
+                int err = errno;
+                LOGE("TCSETS2 failed");
+                close(fd);
+                throwSerialPortException(env, REASON(INVALID_BAUD_RATE), err,
+                                         "non-standard baud rate not supported");
+                return NULL;
+            }
+        }
+    }
+
+    /* Create the wakeup eventfd used by the blocking reader */
+    {
+        wakeFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+        if (wakeFd == -1) {
+            int err = errno;
+            LOGE("eventfd() failed");
+            close(fd);
+            throwSerialPortException(env, REASON(IO), err, "eventfd() failed");
             return NULL;
         }
     }
 
     /* Create a corresponding file descriptor */
     {
-        jclass cFileDescriptor = (*env)->FindClass(env, "java/io/FileDescriptor");
-        jmethodID iFileDescriptor = (*env)->GetMethodID(env, cFileDescriptor, "<init>", "()V");
-        jfieldID descriptorID = (*env)->GetFieldID(env, cFileDescriptor, "descriptor", "I");
-        mFileDescriptor = (*env)->NewObject(env, cFileDescriptor, iFileDescriptor);
-        (*env)->SetIntField(env, mFileDescriptor, descriptorID, (jint) fd);
+        mFileDescriptor = (*env)->NewObject(env, gIds.fileDescriptorClass, gIds.fileDescriptorInit);
+        if (mFileDescriptor == NULL) {
+            close(wakeFd);
+            close(fd);
+            return NULL;
+        }
+        (*env)->SetIntField(env, mFileDescriptor, gIds.fileDescriptorDescriptor, (jint) fd);
+        (*env)->SetIntField(env, thiz, gIds.serialPortWakeFd, wakeFd);
     }
 
     return mFileDescriptor;
 }
 
+static jint getDescriptor(JNIEnv *env, jobject thiz) {
+    jobject mFd = (*env)->GetObjectField(env, thiz, gIds.serialPortFd);
+    jint descriptor;
+    if (mFd == NULL) return -1;
+    descriptor = (*env)->GetIntField(env, mFd, gIds.fileDescriptorDescriptor);
+    (*env)->DeleteLocalRef(env, mFd);
+    return descriptor;
+}
+
+static jint getWakeFd(JNIEnv *env, jobject thiz) {
+    return (*env)->GetIntField(env, thiz, gIds.serialPortWakeFd);
+}
+
+/*
+ * Waits on the port fd and the wakeup eventfd with poll(), so an idle reader
+ * sleeps in the kernel instead of spinning on available().
+ * Returns 1 when the port is readable, 0 on timeout, -1 when woken up and
+ * -2 when an exception has been thrown.
+ */
+static int waitReadable(JNIEnv *env, int fd, int wakeFd, jint timeoutMs) {
+    struct pollfd fds[2];
+    int ret;
+
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return -2;
+    }
+    fds[0].fd = fd;
+    fds[0].events = POLLIN;
+    fds[0].revents = 0;
+    fds[1].fd = wakeFd;
+    fds[1].events = POLLIN;
+    fds[1].revents = 0;
+
+    do {
+        ret = poll(fds, wakeFd < 0 ? 1 : 2, timeoutMs);
+    } while (ret == -1 && errno == EINTR);
+    if (ret == -1) {
+        throwErrno(env, errno);
+        return -2;
+    }
+    if (ret == 0) return 0;
+
+    if (fds[1].revents & POLLIN) {
+        uint64_t value;
+        read(wakeFd, &value, sizeof(value));
+        return -1;
+    }
+    /* close() signalled the eventfd and closed it before poll() rescanned */
+    if (fds[1].revents & POLLNVAL) return -1;
+    if (fds[0].revents & (POLLERR | POLLNVAL)) {
+        throwSerialPortException(env, REASON(HANGUP), 0, "poll() reported an error on the serial port");
+        return -2;
+    }
+    if ((fds[0].revents & POLLHUP) && !(fds[0].revents & POLLIN)) {
+        throwSerialPortException(env, REASON(HANGUP), 0, "serial port hung up");
+        return -2;
+    }
+    return 1;
+}
+
+/*
+ * Reads once from a readable fd. Returns the byte count, 0 when nothing was
+ * available and -2 when an exception has been thrown.
+ * On success the CLOCK_MONOTONIC time right after read() returned is stored
+ * in mLastReadNanos, the same clock as System.nanoTime().
+ */
+static ssize_t readOnce(JNIEnv *env, jobject thiz, int fd, void *buf, size_t length) {
+    ssize_t n;
+    struct timespec ts;
+    do {
+        n = read(fd, buf, length);
+    } while (n == -1 && errno == EINTR);
+    if (n == -1) {
+        if (errno == EAGAIN) return 0;
+        throwErrno(env, errno);
+        return -2;
+    }
+    if (n > 0) {
+        clock_gettime(CLOCK_MONOTONIC, &ts);
+        (*env)->SetLongField(env, thiz, gIds.serialPortLastReadNanos,
+                             (jlong) ts.tv_sec * 1000000000LL + ts.tv_nsec);
+    }
+    return n;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeRead
+ * Signature: ([BIII)I
+ *
+ * Returns the number of bytes read, 0 on timeout and -1 when woken up.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeRead
+        (JNIEnv *env, jobject thiz, jbyteArray buffer, jint offset, jint length, jint timeoutMs) {
+    jbyte buf[16384];
+    int fd = getDescriptor(env, thiz);
+    int ret = waitReadable(env, fd, getWakeFd(env, thiz), timeoutMs);
+    ssize_t n;
+
+    if (ret <= 0) return ret == -2 ? -1 : ret;
+    if (length > (jint) sizeof(buf)) length = sizeof(buf);
+    n = readOnce(env, thiz, fd, buf, (size_t) length);
+    if (n < 0) return -1;
+    if (n > 0) (*env)->SetByteArrayRegion(env, buffer, offset, (jsize) n, buf);
+    return (jint) n;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeReadDirect
+ * Signature: (Ljava/nio/ByteBuffer;III)I
+ *
+ * Same as nativeRead, but reads straight into the memory of a direct buffer.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeReadDirect
+        (JNIEnv *env, jobject thiz, jobject buffer, jint position, jint length, jint timeoutMs) {
+    jbyte *address = (*env)->GetDirectBufferAddress(env, buffer);
+    int fd = getDescriptor(env, thiz);
+    int ret;
+    ssize_t n;
+
+    if (address == NULL) {
+        throwIOException(env, "buffer is not a direct buffer");
+        return -1;
+    }
+    ret = waitReadable(env, fd, getWakeFd(env, thiz), timeoutMs);
+    if (ret <= 0) return ret == -2 ? -1 : ret;
+    n = readOnce(env, thiz, fd, address + position, (size_t) length);
+    return n < 0 ? -1 : (jint) n;
+}
+
+/* Writes all of data, retrying on partial writes; -1 with errno set on failure. */
+static int writeFully(int fd, const jbyte *data, jint length) {
+    jint written = 0;
+    ssize_t n;
+    while (written < length) {
+        n = write(fd, data + written, (size_t) (length - written));
+        if (n == -1) {
+            if (errno == EINTR) continue;
+            if (errno == EAGAIN) {
+                struct pollfd pfd;
+                pfd.fd = fd;
+                pfd.events = POLLOUT;
+                pfd.revents = 0;
+                poll(&pfd, 1, -1);
+                continue;
+            }
+            return -1;
+        }
+        written += (jint) n;
+    }
+    return 0;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeWriteDirect
+ * Signature: (Ljava/nio/ByteBuffer;II)I
+ *
+ * Writes the whole range of a direct buffer, retrying on partial writes.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeWriteDirect
+        (JNIEnv *env, jobject thiz, jobject buffer, jint position, jint length) {
+    jbyte *address = (*env)->GetDirectBufferAddress(env, buffer);
+    int fd = getDescriptor(env, thiz);
+
+    if (address == NULL) {
+        throwIOException(env, "buffer is not a direct buffer");
+        return -1;
+    }
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return -1;
+    }
+    if (writeFully(fd, address + position, length) == -1) {
+        throwErrno(env, errno);
+        return -1;
+    }
+    return length;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    drain
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_drain
+        (JNIEnv *env, jobject thiz) {
+    int fd = getDescriptor(env, thiz);
+    int ret;
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return;
+    }
+    do {
+        ret = tcdrain(fd);
+    } while (ret == -1 && errno == EINTR);
+    if (ret == -1) throwErrno(env, errno);
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetReadTimeouts
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetReadTimeouts
+        (JNIEnv *env, jobject thiz, jint vmin, jint vtime) {
+    struct termios cfg;
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return;
+    }
+    if (tcgetattr(fd, &cfg)) {
+        throwErrno(env, errno);
+        return;
+    }
+    cfg.c_cc[VMIN] = (cc_t) vmin;
+    cfg.c_cc[VTIME] = (cc_t) vtime;
+    if (tcsetattr(fd, TCSANOW, &cfg)) throwErrno(env, errno);
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetLowLatency
+ * Signature: (Z)Z
+ *
+ * Returns false when the driver does not implement TIOCGSERIAL/TIOCSSERIAL.
+ */
+JNIEXPORT jboolean JNICALL Java_android_serialport_SerialPort_nativeSetLowLatency
+        (JNIEnv *env, jobject thiz, jboolean enable) {
+    struct serial_struct serial;
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return JNI_FALSE;
+    }
+    if (ioctl(fd, TIOCGSERIAL, &serial) == -1) {
+        LOGD("TIOCGSERIAL not supported: %s", strerror(errno));
+        return JNI_FALSE;
+    }
+    if (enable) serial.flags |= ASYNC_LOW_LATENCY;
+    else serial.flags &= ~ASYNC_LOW_LATENCY;
+    if (ioctl(fd, TIOCSSERIAL, &serial) == -1) {
+        LOGD("TIOCSSERIAL not supported: %s", strerror(errno));
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeQueueSize
+ * Signature: (Z)I
+ *
+ * Bytes waiting in the kernel input (TIOCINQ) or output (TIOCOUTQ) queue.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeQueueSize
+        (JNIEnv *env, jobject thiz, jboolean output) {
+    int count = 0;
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return -1;
+    }
+    if (ioctl(fd, output ? TIOCOUTQ : TIOCINQ, &count) == -1) {
+        throwErrno(env, errno);
+        return -1;
+    }
+    return count;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeFlush
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeFlush
+        (JNIEnv *env, jobject thiz, jint queue) {
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return;
+    }
+    if (tcflush(fd, queue)) throwErrno(env, errno);
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeGetBaudRate
+ * Signature: ()I
+ *
+ * Returns the output rate the driver actually applied, as reported by TCGETS2.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeGetBaudRate
+        (JNIEnv *env, jobject thiz) {
+    struct serial_termios2 cfg2;
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return -1;
+    }
+    if (ioctl(fd, SERIAL_TCGETS2, &cfg2) == -1) {
+        throwErrno(env, errno);
+        return -1;
+    }
+    return (jint) cfg2.c_ospeed;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeGetIcount
+ * Signature: ([I)Z
+ *
+ * Fills rx, tx, frame, overrun, parity, brk and buf_overrun from TIOCGICOUNT.
+ * Returns false when the driver does not keep these counters.
+ */
+JNIEXPORT jboolean JNICALL Java_android_serialport_SerialPort_nativeGetIcount
+        (JNIEnv *env, jobject thiz, jintArray values) {
+    struct serial_icounter_struct icount;
+    jint out[7];
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return JNI_FALSE;
+    }
+    if (ioctl(fd, TIOCGICOUNT, &icount) == -1) {
+        LOGD("TIOCGICOUNT not supported: %s", strerror(errno));
+        return JNI_FALSE;
+    }
+    out[0] = icount.rx;
+    out[1] = icount.tx;
+    out[2] = icount.frame;
+    out[3] = icount.overrun;
+    out[4] = icount.parity;
+    out[5] = icount.brk;
+    out[6] = icount.buf_overrun;
+    (*env)->SetIntArrayRegion(env, values, 0, 7, out);
+    return JNI_TRUE;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetFlowControl
+ * Signature: (I)V
+ *
+ * mode follows SerialPortConfig: 0 none, 1 RTS/CTS, 2 XON/XOFF.
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetFlowControl
+        (JNIEnv *env, jobject thiz, jint mode) {
+    struct termios cfg;
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return;
+    }
+    if (tcgetattr(fd, &cfg)) {
+        throwSerialPortException(env, REASON(CONFIGURE_FAILED), errno, "tcgetattr() failed");
+        return;
+    }
+    cfg.c_cflag &= ~CRTSCTS;
+    cfg.c_iflag &= ~(IXON | IXOFF | IXANY);
+    if (mode == 1) {
+        cfg.c_cflag |= CRTSCTS;
+    } else if (mode == 2) {
+        cfg.c_iflag |= IXON | IXOFF;
+        cfg.c_cc[VSTART] = 0x11;
+        cfg.c_cc[VSTOP] = 0x13;
+    }
+    if (tcsetattr(fd, TCSANOW, &cfg)) {
+        throwSerialPortException(env, REASON(CONFIGURE_FAILED), errno, "tcsetattr() failed");
+    }
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetReceivePaused
+ * Signature: (Z)V
+ *
+ * Transmits STOP or START to the peer right away (tcflow TCIOFF/TCION).
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetReceivePaused
+        (JNIEnv *env, jobject thiz, jboolean paused) {
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return;
+    }
+    if (tcflow(fd, paused ? TCIOFF : TCION)) throwErrno(env, errno);
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetRs485
+ * Signature: (ZZII)Z
+ *
+ * Returns false when the driver does not implement TIOCGRS485/TIOCSRS485.
+ */
+JNIEXPORT jboolean JNICALL Java_android_serialport_SerialPort_nativeSetRs485
+        (JNIEnv *env, jobject thiz, jboolean enable, jboolean rtsOnSend, jint delayBeforeMs, jint delayAfterMs) {
+    struct serial_rs485 rs485;
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return JNI_FALSE;
+    }
+    if (ioctl(fd, TIOCGRS485, &rs485) == -1) {
+        LOGD("TIOCGRS485 not supported: %s", strerror(errno));
+        return JNI_FALSE;
+    }
+    rs485.flags &= ~(SER_RS485_ENABLED | SER_RS485_RTS_ON_SEND | SER_RS485_RTS_AFTER_SEND | SER_RS485_RX_DURING_TX);
+    if (enable) {
+        rs485.flags |= SER_RS485_ENABLED;
+        rs485.flags |= rtsOnSend ? SER_RS485_RTS_ON_SEND : SER_RS485_RTS_AFTER_SEND;
+        rs485.delay_rts_before_send = (__u32) delayBeforeMs;
+        rs485.delay_rts_after_send = (__u32) delayAfterMs;
+    }
+    if (ioctl(fd, TIOCSRS485, &rs485) == -1) {
+        LOGD("TIOCSRS485 not supported: %s", strerror(errno));
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+static int setRts(int fd, int on) {
+    int bits = TIOCM_RTS;
+    return ioctl(fd, on ? TIOCMBIS : TIOCMBIC, &bits);
+}
+
+static void sleepMicros(jint us) {
+    struct timespec ts;
+    if (us <= 0) return;
+    ts.tv_sec = us / 1000000;
+    ts.tv_nsec = (long) (us % 1000000) * 1000;
+    while (clock_nanosleep(CLOCK_MONOTONIC, 0, &ts, &ts) == EINTR);
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetRts
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetRts
+        (JNIEnv *env, jobject thiz, jboolean on) {
+    int fd = getDescriptor(env, thiz);
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return;
+    }
+    if (setRts(fd, on)) throwSerialPortException(env, REASON(CONFIGURE_FAILED), errno, "cannot set RTS");
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeWriteToggled
+ * Signature: (Ljava/nio/ByteBuffer;IIZII)I
+ *
+ * RS-485 without driver support: drives RTS to the send level, writes the
+ * whole range, waits in tcdrain() until the UART has shifted out the last
+ * byte and drops RTS again, all without returning to Java in between.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeWriteToggled
+        (JNIEnv *env, jobject thiz, jobject buffer, jint position, jint length,
+         jboolean rtsOnSend, jint delayBeforeUs, jint delayAfterUs) {
+    jbyte *address = (*env)->GetDirectBufferAddress(env, buffer);
+    int fd = getDescriptor(env, thiz);
+    int err;
+
+    if (address == NULL) {
+        throwIOException(env, "buffer is not a direct buffer");
+        return -1;
+    }
+    if (fd < 0) {
+        throwIOException(env, "serial port is not open");
+        return -1;
+    }
+    if (setRts(fd, rtsOnSend)) {
+        throwErrno(env, errno);
+        return -1;
+    }
+    sleepMicros(delayBeforeUs);
+    if (writeFully(fd, address + position, length) == -1) {
+        err = errno;
+        /* give the bus back even when the write failed */
+        setRts(fd, !rtsOnSend);
+        throwErrno(env, err);
+        return -1;
+    }
+    while (tcdrain(fd) == -1) {
+        if (errno == EINTR) continue;
+        err = errno;
+        setRts(fd, !rtsOnSend);
+        throwErrno(env, err);
+        return -1;
+    }
+    sleepMicros(delayAfterUs);
+    if (setRts(fd, !rtsOnSend)) {
+        throwErrno(env, errno);
+        return -1;
+    }
+    return length;
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    fd
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_fd
+        (JNIEnv *env, jobject thiz) {
+    return getDescriptor(env, thiz);
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    wakeup
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_wakeup
+        (JNIEnv *env, jobject thiz) {
+    uint64_t value = 1;
+    int wakeFd = getWakeFd(env, thiz);
+    if (wakeFd >= 0) write(wakeFd, &value, sizeof(value));
+}
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    clearWakeup
+ * Signature: ()V
+ *
+ * Consumes a pending wakeup; the eventfd is non-blocking, so this is a
+ * no-op when none is pending.
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_clearWakeup
+        (JNIEnv *env, jobject thiz) {
+    uint64_t value;
+    int wakeFd = getWakeFd(env, thiz);
+    if (wakeFd >= 0) read(wakeFd, &value, sizeof(value));
+}
+
 /*
  * Class:     cedric_serial_SerialPort
  * Method:    close
@@ -232,16 +966,26 @@ JNIEXPORT jobject JNICALL Java_android_serialport_SerialPort_open
  */
 JNIEXPORT void JNICALL Java_android_serialport_SerialPort_close
         (JNIEnv *env, jobject thiz) {
-    jclass SerialPortClass = (*env)->GetObjectClass(env, thiz);
-    jclass FileDescriptorClass = (*env)->FindClass(env, "java/io/FileDescriptor");
+    jobject mFd = (*env)->GetObjectField(env, thiz, gIds.serialPortFd);
+    jint descriptor;
 
-    jfieldID mFdID = (*env)->GetFieldID(env, SerialPortClass, "mFd", "Ljava/io/FileDescriptor;");
-    jfieldID descriptorID = (*env)->GetFieldID(env, FileDescriptorClass, "descriptor", "I");
+    jint wakeFd = (*env)->GetIntField(env, thiz, gIds.serialPortWakeFd);
+    if (wakeFd >= 0) {
+        /* closing an fd does not wake a thread polling it; signal first */
+        uint64_t value = 1;
+        write(wakeFd, &value, sizeof(value));
+        close(wakeFd);
+        (*env)->SetIntField(env, thiz, gIds.serialPortWakeFd, -1);
+    }
 
-    jobject mFd = (*env)->GetObjectField(env, thiz, mFdID);
-    jint descriptor = (*env)->GetIntField(env, mFd, descriptorID);
+    /* never opened, or open() failed */
+    if (mFd == NULL) return;
+    descriptor = (*env)->GetIntField(env, mFd, gIds.fileDescriptorDescriptor);
+    if (descriptor < 0) return;
 
     LOGD("close(fd = %d)", descriptor);
     close(descriptor);
+    /* invalidate the number so a reopened port never sees a stale fd */
+    (*env)->SetIntField(env, mFd, gIds.fileDescriptorDescriptor, -1);
 }
 
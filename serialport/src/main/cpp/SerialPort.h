@@ -7,6 +7,12 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef android_serialport_SerialPort_FLUSH_INPUT
+#define android_serialport_SerialPort_FLUSH_INPUT 0L
+#undef android_serialport_SerialPort_FLUSH_OUTPUT
+#define android_serialport_SerialPort_FLUSH_OUTPUT 1L
+#undef android_serialport_SerialPort_FLUSH_BOTH
+#define android_serialport_SerialPort_FLUSH_BOTH 2L
 /*
  * Class:     android_serialport_SerialPort
  * Method:    open
@@ -23,6 +29,150 @@ JNIEXPORT jobject JNICALL Java_android_serialport_SerialPort_open
 JNIEXPORT void JNICALL Java_android_serialport_SerialPort_close
   (JNIEnv *, jobject);
 
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeRead
+ * Signature: ([BIII)I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeRead
+  (JNIEnv *, jobject, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeReadDirect
+ * Signature: (Ljava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeReadDirect
+  (JNIEnv *, jobject, jobject, jint, jint, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeWriteDirect
+ * Signature: (Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeWriteDirect
+  (JNIEnv *, jobject, jobject, jint, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    drain
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_drain
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetReadTimeouts
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetReadTimeouts
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetLowLatency
+ * Signature: (Z)Z
+ */
+JNIEXPORT jboolean JNICALL Java_android_serialport_SerialPort_nativeSetLowLatency
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeQueueSize
+ * Signature: (Z)I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeQueueSize
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeFlush
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeFlush
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeGetBaudRate
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeGetBaudRate
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeGetIcount
+ * Signature: ([I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_android_serialport_SerialPort_nativeGetIcount
+  (JNIEnv *, jobject, jintArray);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetFlowControl
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetFlowControl
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetReceivePaused
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetReceivePaused
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetRs485
+ * Signature: (ZZII)Z
+ */
+JNIEXPORT jboolean JNICALL Java_android_serialport_SerialPort_nativeSetRs485
+  (JNIEnv *, jobject, jboolean, jboolean, jint, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeSetRts
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_nativeSetRts
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    nativeWriteToggled
+ * Signature: (Ljava/nio/ByteBuffer;IIZII)I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_nativeWriteToggled
+  (JNIEnv *, jobject, jobject, jint, jint, jboolean, jint, jint);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    fd
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPort_fd
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    wakeup
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_wakeup
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     android_serialport_SerialPort
+ * Method:    clearWakeup
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPort_clearWakeup
+  (JNIEnv *, jobject);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <unistd.h>
+#include <string.h>
+#include <errno.h>
+#include <stdint.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+#include <jni.h>
+
+#include "SerialPortSelector.h"
+#include "SerialJni.h"
+
+#include "android/log.h"
+
+static const char *TAG = "serial_port_selector";
+#define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
+#define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
+
+#define MAX_EVENTS 64
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeCreate
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPortSelector_nativeCreate
+        (JNIEnv *env, jclass clazz) {
+    int epfd = epoll_create1(EPOLL_CLOEXEC);
+    if (epfd == -1) {
+        int err = errno;
+        LOGE("epoll_create1() failed: %s", strerror(err));
+        throwSerialPortException(env, REASON(IO), err, "epoll_create1() failed");
+    }
+    return epfd;
+}
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeCreateWakeup
+ * Signature: (I)I
+ *
+ * Creates an eventfd and registers it on the epoll instance, so another
+ * thread can interrupt epoll_wait().
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPortSelector_nativeCreateWakeup
+        (JNIEnv *env, jclass clazz, jint epfd) {
+    struct epoll_event ev;
+    int wakeFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if (wakeFd == -1) {
+        int err = errno;
+        LOGE("eventfd() failed: %s", strerror(err));
+        throwSerialPortException(env, REASON(IO), err, "eventfd() failed");
+        return -1;
+    }
+    memset(&ev, 0, sizeof(ev));
+    ev.events = EPOLLIN;
+    ev.data.fd = wakeFd;
+    if (epoll_ctl(epfd, EPOLL_CTL_ADD, wakeFd, &ev) == -1) {
+        int err = errno;
+        close(wakeFd);
+        throwSerialPortException(env, REASON(IO), err, "epoll_ctl() failed");
+        return -1;
+    }
+    return wakeFd;
+}
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeCtl
+ * Signature: (IIII)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPortSelector_nativeCtl
+        (JNIEnv *env, jclass clazz, jint epfd, jint op, jint fd, jint events) {
+    struct epoll_event ev;
+    memset(&ev, 0, sizeof(ev));
+    ev.events = (uint32_t) events;
+    ev.data.fd = fd;
+    if (epoll_ctl(epfd, op, fd, &ev) == -1) throwSerialPortException(env, REASON(IO), errno, "epoll_ctl() failed");
+}
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeWait
+ * Signature: (I[I[II)I
+ *
+ * Returns the number of ready fds copied into fds/events. The wakeup eventfd
+ * is drained here and reported like any other fd.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialPortSelector_nativeWait
+        (JNIEnv *env, jclass clazz, jint epfd, jintArray fds, jintArray events, jint timeoutMs) {
+    struct epoll_event ev[MAX_EVENTS];
+    jint readyFds[MAX_EVENTS];
+    jint readyEvents[MAX_EVENTS];
+    int max = (*env)->GetArrayLength(env, fds);
+    int n, i;
+
+    if (max > MAX_EVENTS) max = MAX_EVENTS;
+    do {
+        n = epoll_wait(epfd, ev, max, timeoutMs);
+    } while (n == -1 && errno == EINTR);
+    if (n == -1) {
+        throwSerialPortException(env, REASON(IO), errno, "epoll_wait() failed");
+        return -1;
+    }
+    for (i = 0; i < n; i++) {
+        readyFds[i] = ev[i].data.fd;
+        readyEvents[i] = (jint) ev[i].events;
+    }
+    if (n > 0) {
+        (*env)->SetIntArrayRegion(env, fds, 0, n, readyFds);
+        (*env)->SetIntArrayRegion(env, events, 0, n, readyEvents);
+    }
+    return n;
+}
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeWakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPortSelector_nativeWakeup
+        (JNIEnv *env, jclass clazz, jint wakeFd) {
+    uint64_t value = 1;
+    write(wakeFd, &value, sizeof(value));
+}
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeDrainWakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPortSelector_nativeDrainWakeup
+        (JNIEnv *env, jclass clazz, jint wakeFd) {
+    uint64_t value;
+    read(wakeFd, &value, sizeof(value));
+}
+
+/*
+ * Class:     android_serialport_SerialPortSelector
+ * Method:    nativeClose
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_android_serialport_SerialPortSelector_nativeClose
+        (JNIEnv *env, jclass clazz, jint fd) {
+    LOGD("close(fd = %d)", fd);
+    close(fd);
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#define _GNU_SOURCE
+
+#include <unistd.h>
+#include <string.h>
+#include <errno.h>
+#include <sched.h>
+#include <sys/resource.h>
+#include <sys/syscall.h>
+#include <jni.h>
+
+#include "SerialThreadPolicy.h"
+
+#include "android/log.h"
+
+static const char *TAG = "serial_thread_policy";
+#define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
+
+/*
+ * Class:     android_serialport_SerialThreadPolicy
+ * Method:    nativeApply
+ * Signature: (ZIIJ)I
+ *
+ * All calls target the calling thread only: on Linux pid 0 for the sched_*
+ * calls and the tid for setpriority() address a single thread.
+ */
+JNIEXPORT jint JNICALL Java_android_serialport_SerialThreadPolicy_nativeApply
+        (JNIEnv *env, jclass clazz, jboolean setNiceness, jint niceness, jint fifoPriority,
+         jlong cpuMask) {
+    jint applied = 0;
+    pid_t tid = (pid_t) syscall(SYS_gettid);
+
+    if (fifoPriority > 0) {
+        struct sched_param param;
+        memset(&param, 0, sizeof(param));
+        param.sched_priority = fifoPriority;
+        if (sched_setscheduler(0, SCHED_FIFO, &param) == 0) {
+            applied |= android_serialport_SerialThreadPolicy_APPLIED_FIFO;
+        } else {
+            LOGD("SCHED_FIFO %d refused: %s", fifoPriority, strerror(errno));
+        }
+    }
+    /* nice has no effect on SCHED_FIFO threads, so only set it as the fallback */
+    if (setNiceness && !(applied & android_serialport_SerialThreadPolicy_APPLIED_FIFO)) {
+        if (setpriority(PRIO_PROCESS, (id_t) tid, niceness) == 0) {
+            applied |= android_serialport_SerialThreadPolicy_APPLIED_NICENESS;
+        } else {
+            LOGD("nice %d refused: %s", niceness, strerror(errno));
+        }
+    }
+    if (cpuMask != 0) {
+        cpu_set_t set;
+        int cpu;
+        CPU_ZERO(&set);
+        for (cpu = 0; cpu < 64; cpu++) {
+            if (cpuMask & (1LL << cpu)) CPU_SET(cpu, &set);
+        }
+        if (sched_setaffinity(0, sizeof(set), &set) == 0) {
+            applied |= android_serialport_SerialThreadPolicy_APPLIED_AFFINITY;
+        } else {
+            LOGD("sched_setaffinity refused: %s", strerror(errno));
+        }
+    }
+    return applied;
+}
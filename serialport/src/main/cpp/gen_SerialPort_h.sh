@@ -1,3 +1,7 @@
 #!/bin/sh
 javah -o SerialPort.h -jni -classpath ../java android.serialport.SerialPort
-
+javah -o SerialPortSelector.h -jni -classpath ../java android.serialport.SerialPortSelector
+javah -o SerialDeviceWatcher.h -jni -classpath ../java android.serialport.SerialDeviceWatcher
+javah -o SerialPortException.h -jni -classpath ../java android.serialport.SerialPortException
+javah -o SerialBridge.h -jni -classpath ../java android.serialport.SerialBridge
+javah -o SerialThreadPolicy.h -jni -classpath ../java android.serialport.SerialThreadPolicy
@@ -0,0 +1,107 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 按帧头/帧尾分帧
+ * <ul>
+ * <li>帧头+帧尾：从帧头开始到帧尾结束(含帧头帧尾)</li>
+ * <li>仅帧头：从帧头开始到下一个帧头之前</li>
+ * <li>仅帧尾：从上一帧之后到帧尾结束(含帧尾)</li>
+ * </ul>
+ * 帧头帧尾使用KMP流式匹配，每个字节只比较常数次，跨读取块边界也能正确匹配
+ */
+public final class DelimiterFrameDecoder implements FrameDecoder {
+
+    private final byte[] head;
+    private final byte[] tail;
+    private final int[] headFailure;
+    private final int[] tailFailure;
+    private final int maxFrameLength;
+    private final FrameBuffer frame;
+
+    private boolean synced;
+    private int headMatched;
+    private int tailMatched;
+
+    /**
+     * @param head           帧头，可为null
+     * @param tail           帧尾，可为null
+     * @param maxFrameLength 最大帧长，超出后丢弃已缓存字节重新同步
+     */
+    public DelimiterFrameDecoder(@Nullable byte[] head, @Nullable byte[] tail, int maxFrameLength) {
+        if ((head == null || head.length == 0) && (tail == null || tail.length == 0)) {
+            throw new IllegalArgumentException("head or tail is required");
+        }
+        if (maxFrameLength <= 0) throw new IllegalArgumentException("maxFrameLength must be positive");
+        this.head = head == null || head.length == 0 ? null : head.clone();
+        this.tail = tail == null || tail.length == 0 ? null : tail.clone();
+        this.headFailure = this.head == null ? null : failure(this.head);
+        this.tailFailure = this.tail == null ? null : failure(this.tail);
+        this.maxFrameLength = maxFrameLength;
+        this.frame = new FrameBuffer(Math.min(maxFrameLength, 1024));
+    }
+
+    @Override
+    public void decode(@NonNull byte[] buffer, int offset, int length, @NonNull Listener listener) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = buffer[i];
+            frame.append(b);
+            if (head != null && !synced) {
+                headMatched = step(head, headFailure, headMatched, b);
+                if (headMatched == head.length) {
+                    synced = true;
+                    headMatched = 0;
+                    tailMatched = 0;
+                }
+                //只保留可能成为帧头的部分
+                frame.discard(frame.length() - (synced ? head.length : headMatched));
+                continue;
+            }
+            if (tail != null) {
+                tailMatched = step(tail, tailFailure, tailMatched, b);
+                if (tailMatched == tail.length) {
+                    listener.onFrame(frame.data, frame.start, frame.length());
+                    frame.clear();
+                    synced = false;
+                    tailMatched = 0;
+                    continue;
+                }
+            } else {
+                headMatched = step(head, headFailure, headMatched, b);
+                if (headMatched == head.length) {
+                    listener.onFrame(frame.data, frame.start, frame.length() - head.length);
+                    frame.discard(frame.length() - head.length);
+                    headMatched = 0;
+                    continue;
+                }
+            }
+            if (frame.length() > maxFrameLength) reset();
+        }
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+        synced = false;
+        headMatched = 0;
+        tailMatched = 0;
+    }
+
+    private static int step(byte[] pattern, int[] failure, int matched, byte b) {
+        while (matched > 0 && pattern[matched] != b) matched = failure[matched - 1];
+        if (pattern[matched] == b) matched++;
+        return matched;
+    }
+
+    private static int[] failure(byte[] pattern) {
+        int[] failure = new int[pattern.length];
+        for (int i = 1, k = 0; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) k = failure[k - 1];
+            if (pattern[i] == pattern[k]) k++;
+            failure[i] = k;
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,41 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 按固定长度分帧；完整的帧直接在输入缓冲上回调，只有跨块的残帧才会被缓存
+ */
+public final class FixedLengthFrameDecoder implements FrameDecoder {
+
+    private final int frameLength;
+    private final FrameBuffer frame;
+
+    public FixedLengthFrameDecoder(int frameLength) {
+        if (frameLength <= 0) throw new IllegalArgumentException("frameLength must be positive");
+        this.frameLength = frameLength;
+        this.frame = new FrameBuffer(frameLength);
+    }
+
+    @Override
+    public void decode(@NonNull byte[] buffer, int offset, int length, @NonNull Listener listener) {
+        int end = offset + length;
+        if (frame.length() > 0) {
+            int need = Math.min(frameLength - frame.length(), length);
+            frame.append(buffer, offset, need);
+            offset += need;
+            if (frame.length() < frameLength) return;
+            listener.onFrame(frame.data, frame.start, frameLength);
+            frame.clear();
+        }
+        while (end - offset >= frameLength) {
+            listener.onFrame(buffer, offset, frameLength);
+            offset += frameLength;
+        }
+        if (offset < end) frame.append(buffer, offset, end - offset);
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+    }
+}
@@ -0,0 +1,61 @@
+package android.serialport;
+
+/**
+ * 分帧器内部使用的字节缓冲，数据区为[start, end)，按需整理或扩容
+ */
+final class FrameBuffer {
+
+    byte[] data;
+    int start;
+    int end;
+
+    FrameBuffer(int initialCapacity) {
+        this.data = new byte[Math.max(16, initialCapacity)];
+    }
+
+    int length() {
+        return end - start;
+    }
+
+    void append(byte b) {
+        if (end == data.length) ensureWritable(1);
+        data[end++] = b;
+    }
+
+    void append(byte[] src, int offset, int length) {
+        if (data.length - end < length) ensureWritable(length);
+        System.arraycopy(src, offset, data, end, length);
+        end += length;
+    }
+
+    /**
+     * 丢弃开头的n个字节
+     */
+    void discard(int n) {
+        start += n;
+        if (start >= end) {
+            start = 0;
+            end = 0;
+        }
+    }
+
+    void clear() {
+        start = 0;
+        end = 0;
+    }
+
+    private void ensureWritable(int n) {
+        int length = end - start;
+        if (start > 0 && data.length - length >= n && start >= length) {
+            System.arraycopy(data, start, data, 0, length);
+        } else {
+            int capacity = data.length;
+            while (capacity - length < n) capacity <<= 1;
+            byte[] newData = new byte[capacity];
+            System.arraycopy(data, start, newData, 0, length);
+            data = newData;
+        }
+        start = 0;
+        end = length;
+    }
+}
@@ -0,0 +1,32 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 流式分帧器，将串口读到的字节流切分为完整的帧
+ * <p>
+ * 实现类内部使用原始类型的字节缓冲，每个字节只处理一次，不产生装箱
+ */
+public interface FrameDecoder {
+
+    interface Listener {
+        /**
+         * 解出一帧；buffer为分帧器内部缓冲或调用方传入的缓冲，仅在回调期间有效
+         *
+         * @param buffer 帧所在的缓冲
+         * @param offset 帧起始偏移
+         * @param length 帧长度
+         */
+        void onFrame(@NonNull byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * 输入一段字节，每解出一帧回调一次listener
+     */
+    void decode(@NonNull byte[] buffer, int offset, int length, @NonNull Listener listener);
+
+    /**
+     * 丢弃已缓存但未成帧的字节
+     */
+    void reset();
+}
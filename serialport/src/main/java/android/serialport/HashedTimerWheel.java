@@ -0,0 +1,197 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮：大量超时任务共用一个线程，新增与取消都是O(1)，精度为一个tick
+ */
+public final class HashedTimerWheel {
+
+    private static final String TAG = "HashedTimerWheel";
+
+    public static final class Timeout {
+        final Runnable task;
+        final long deadline;
+        long remainingRounds;
+        Timeout prev;
+        Timeout next;
+        Bucket bucket;
+        volatile boolean cancelled;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务；任务已执行时无效果
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) timeout.prev.next = next;
+            if (next != null) next.prev = timeout.prev;
+            if (timeout == head) head = next;
+            if (timeout == tail) tail = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    /**
+     * 一次start到stop之间的状态；重新启动时整体替换，停止前的槽与待加入任务随之丢弃
+     */
+    private static final class Run {
+        final Bucket[] wheel;
+        final ConcurrentLinkedQueue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+        final long startTime = System.nanoTime();
+        volatile boolean running = true;
+        long tick;
+
+        Run(int size) {
+            wheel = new Bucket[size];
+            for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        }
+    }
+
+    private final long tickNanos;
+    private final int size;
+    private final int mask;
+    private Run run;
+    private Thread thread;
+
+    /**
+     * @param tickDuration 每个tick的时长，即超时精度
+     * @param unit         时间单位
+     * @param wheelSize    槽数，向上取整为2的幂
+     */
+    public HashedTimerWheel(long tickDuration, @NonNull TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize));
+        if (size < wheelSize) size <<= 1;
+        this.size = size;
+        this.mask = size - 1;
+    }
+
+    public HashedTimerWheel() {
+        this(10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * 添加超时任务，任务在时间轮线程中执行，应尽快返回
+     */
+    @NonNull
+    public Timeout newTimeout(@NonNull Runnable task, long delay, @NonNull TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        Run r;
+        synchronized (this) {
+            start();
+            r = run;
+        }
+        r.pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        final Run r = new Run(size);
+        run = r;
+        thread = new Thread(() -> loop(r), TAG);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 停止时间轮，未到期的任务不再执行；之后的{@link #newTimeout}会重新启动一轮，从零计时
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        run.running = false;
+        run = null;
+        LockSupport.unpark(thread);
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    private void loop(Run r) {
+        while (r.running) {
+            long deadline = r.startTime + (r.tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline && r.running) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+            if (!r.running) break;
+            transferPending(r);
+            expire(r, r.wheel[(int) r.tick & mask]);
+            r.tick++;
+        }
+    }
+
+    private void transferPending(Run r) {
+        Timeout timeout;
+        while ((timeout = r.pendingTimeouts.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long ticks = Math.max(r.tick, (timeout.deadline - r.startTime + tickNanos - 1) / tickNanos);
+            timeout.remainingRounds = (ticks - r.tick) / size;
+            r.wheel[(int) ticks & mask].add(timeout);
+        }
+    }
+
+    private void expire(Run r, Bucket bucket) {
+        Timeout timeout = bucket.head;
+        //任务中调用stop()后同一槽里剩下的任务也不再执行
+        while (timeout != null && r.running) {
+            if (timeout.cancelled) {
+                timeout = bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0) {
+                Timeout next = bucket.remove(timeout);
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "timeout task failed", e);
+                }
+                timeout = next;
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 按字节间隔分帧(如Modbus RTU的3.5字符静默期)：两次收到数据的间隔超过gap即认为上一帧结束
+ * <p>
+ * 驱动按FIFO触发深度成批交付，一段数据的接收时间是其最后一个字节到达的时刻；给出单字符时间时，
+ * 静默期从上一段的接收时间算到这一段第一个字节开始传输(接收时间减去length个字符时间)，
+ * 低波特率下成批交付的间隔不会被误判为帧间静默
+ * <p>
+ * 静默期内没有新数据时上一帧不会自动结束，读线程需在读超时后调用{@link #flush(long, Listener)}
+ */
+public final class IdleGapFrameDecoder implements FrameDecoder {
+
+    private final long gapNanos;
+    private final long charNanos;
+    private final int maxFrameLength;
+    private final FrameBuffer frame;
+    private long lastReceiveNanos;
+
+    /**
+     * 不扣除数据段的传输时间，只适合接收时间即字节到达时刻的场合(如按字节交付或高波特率)
+     *
+     * @param gapNanos       帧间静默期，纳秒
+     * @param maxFrameLength 最大帧长，超出后立即成帧
+     */
+    public IdleGapFrameDecoder(long gapNanos, int maxFrameLength) {
+        this(gapNanos, 0, maxFrameLength);
+    }
+
+    /**
+     * @param gapNanos       帧间静默期，纳秒
+     * @param charNanos      单个字符的传输时间，纳秒，见{@link #charNanos(SerialPort)}
+     * @param maxFrameLength 最大帧长，超出后立即成帧
+     */
+    public IdleGapFrameDecoder(long gapNanos, long charNanos, int maxFrameLength) {
+        if (charNanos < 0) throw new IllegalArgumentException("charNanos must not be negative");
+        if (maxFrameLength <= 0) throw new IllegalArgumentException("maxFrameLength must be positive");
+        this.gapNanos = gapNanos;
+        this.charNanos = charNanos;
+        this.maxFrameLength = maxFrameLength;
+        this.frame = new FrameBuffer(Math.min(maxFrameLength, 1024));
+    }
+
+    /**
+     * 按串口参数创建Modbus RTU分帧器：静默期为{@link #modbusGapNanos(SerialPort)}，并扣除数据段的传输时间
+     */
+    @NonNull
+    public static IdleGapFrameDecoder forModbus(@NonNull SerialPort serialPort, int maxFrameLength) {
+        return new IdleGapFrameDecoder(modbusGapNanos(serialPort), charNanos(serialPort), maxFrameLength);
+    }
+
+    /**
+     * 按串口参数计算3.5字符时间；波特率大于19200时按Modbus规范固定为1750微秒
+     */
+    public static long modbusGapNanos(@NonNull SerialPort serialPort) {
+        if (serialPort.getBaudRate() > 19200) return 1750000L;
+        return charNanos(serialPort) * 35 / 10;
+    }
+
+    /**
+     * 按串口参数计算单个字符(起始位+数据位+校验位+停止位)的传输时间，纳秒
+     */
+    public static long charNanos(@NonNull SerialPort serialPort) {
+        int bits = 1 + serialPort.getDataBits() + (serialPort.getParity() == 0 ? 0 : 1) + serialPort.getStopBits();
+        return bits * 1000000000L / Math.max(1, serialPort.getBaudRate());
+    }
+
+    public long getGapNanos() {
+        return gapNanos;
+    }
+
+    @Override
+    public void decode(@NonNull byte[] buffer, int offset, int length, @NonNull Listener listener) {
+        decode(buffer, offset, length, System.nanoTime(), listener);
+    }
+
+    /**
+     * @param receiveNanos 这段数据最后一个字节的接收时间，{@link System#nanoTime()}时基
+     */
+    public void decode(@NonNull byte[] buffer, int offset, int length, long receiveNanos, @NonNull Listener listener) {
+        //这段数据第一个字节开始传输的时刻，之前的线路空闲才是帧间静默
+        flush(receiveNanos - length * charNanos, listener);
+        int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(end - offset, maxFrameLength - frame.length());
+            frame.append(buffer, offset, n);
+            offset += n;
+            if (frame.length() == maxFrameLength) emit(listener);
+        }
+        lastReceiveNanos = receiveNanos;
+    }
+
+    /**
+     * 距上次收到数据已超过静默期时，将缓存的字节作为一帧输出
+     *
+     * @param nowNanos 当前时刻，或下一段数据开始传输的时刻
+     *
+     * @return 是否输出了一帧
+     */
+    public boolean flush(long nowNanos, @NonNull Listener listener) {
+        if (frame.length() == 0 || nowNanos - lastReceiveNanos < gapNanos) return false;
+        emit(listener);
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+    }
+
+    private void emit(Listener listener) {
+        listener.onFrame(frame.data, frame.start, frame.length());
+        frame.clear();
+    }
+}
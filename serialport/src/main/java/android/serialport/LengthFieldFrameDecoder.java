@@ -0,0 +1,74 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 按长度字段分帧
+ * <p>
+ * 帧长 = lengthFieldOffset + lengthFieldSize + 长度字段值 + lengthAdjustment；
+ * 长度字段值非法(帧长小于头部或大于最大帧长)时丢弃一个字节重新同步
+ */
+public final class LengthFieldFrameDecoder implements FrameDecoder {
+
+    private final int lengthFieldOffset;
+    private final int lengthFieldSize;
+    private final boolean bigEndian;
+    private final int lengthAdjustment;
+    private final int maxFrameLength;
+    private final int headerLength;
+    private final FrameBuffer frame;
+
+    /**
+     * @param lengthFieldOffset 长度字段在帧内的偏移
+     * @param lengthFieldSize   长度字段字节数；1、2或4
+     * @param bigEndian         长度字段是否大端
+     * @param lengthAdjustment  长度字段值之外附加的字节数，如校验码；可为负
+     * @param maxFrameLength    最大帧长
+     */
+    public LengthFieldFrameDecoder(int lengthFieldOffset, int lengthFieldSize, boolean bigEndian,
+                                   int lengthAdjustment, int maxFrameLength) {
+        if (lengthFieldSize != 1 && lengthFieldSize != 2 && lengthFieldSize != 4) {
+            throw new IllegalArgumentException("lengthFieldSize must be 1, 2 or 4");
+        }
+        if (lengthFieldOffset < 0) throw new IllegalArgumentException("lengthFieldOffset must not be negative");
+        if (maxFrameLength < lengthFieldOffset + lengthFieldSize) {
+            throw new IllegalArgumentException("maxFrameLength must cover the length field");
+        }
+        this.lengthFieldOffset = lengthFieldOffset;
+        this.lengthFieldSize = lengthFieldSize;
+        this.bigEndian = bigEndian;
+        this.lengthAdjustment = lengthAdjustment;
+        this.maxFrameLength = maxFrameLength;
+        this.headerLength = lengthFieldOffset + lengthFieldSize;
+        this.frame = new FrameBuffer(Math.min(maxFrameLength, 1024));
+    }
+
+    @Override
+    public void decode(@NonNull byte[] buffer, int offset, int length, @NonNull Listener listener) {
+        frame.append(buffer, offset, length);
+        while (frame.length() >= headerLength) {
+            long frameLength = (long) headerLength + lengthField(frame.data, frame.start + lengthFieldOffset) + lengthAdjustment;
+            if (frameLength < headerLength || frameLength > maxFrameLength) {
+                frame.discard(1);
+                continue;
+            }
+            if (frame.length() < frameLength) break;
+            listener.onFrame(frame.data, frame.start, (int) frameLength);
+            frame.discard((int) frameLength);
+        }
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+    }
+
+    private long lengthField(byte[] data, int index) {
+        long value = 0;
+        for (int i = 0; i < lengthFieldSize; i++) {
+            int b = data[bigEndian ? index + i : index + lengthFieldSize - 1 - i] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,283 @@
+package android.serialport;
+
+import android.net.LocalSocket;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+
+/**
+ * 串口与socket之间的转发(类似ser2net)：数据在内核中经pipe用splice/tee搬运，不经过Java堆；
+ * 内核不支持对tty做splice时自动改为read/write
+ * <p>
+ * 串口收到的数据分发给所有客户端，只有可写客户端发来的数据会写入串口，只读客户端发来的数据被丢弃；
+ * 跟不上的客户端(积压超过256KB)会被断开。转发的数据不经过{@link SerialPort}的统计与录制器
+ */
+public final class SerialBridge implements Closeable {
+
+    private static final String TAG = "SerialBridge";
+
+    /**
+     * 最多同时连接的客户端数
+     */
+    public static final int MAX_CLIENTS = 16;
+
+    /**
+     * 桥接停止回调，在转发线程中调用
+     */
+    public interface Listener {
+        /**
+         * @param error 串口出错时的异常；调用{@link #stop()}停止时为null
+         */
+        void onStopped(@Nullable IOException error);
+    }
+
+    private final SerialPort serialPort;
+    private final Object lock = new Object();
+    //待转发线程加入/移除的客户端fd，lock保护
+    private final ArrayList<int[]> pendingAdds = new ArrayList<>();
+    private final ArrayList<Integer> pendingRemoves = new ArrayList<>();
+    private final ArrayList<Integer> clients = new ArrayList<>();
+    private final long[] counters = new long[3];
+    private boolean spliceEnabled = true;
+    private Listener listener;
+    private long handle;
+    //转发线程，lock保护；串口出错退出时由转发线程自己清除
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param serialPort 已打开的串口；转发期间不要再通过它读取
+     */
+    public SerialBridge(@NonNull SerialPort serialPort) {
+        this.serialPort = serialPort;
+    }
+
+    /**
+     * 是否尝试splice，默认true；false时始终用read/write，便于对比。须在{@link #start()}前设置
+     */
+    public void setSpliceEnabled(boolean enabled) {
+        this.spliceEnabled = enabled;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 加入TCP客户端；桥接持有自己的一份fd，调用者仍负责关闭socket
+     *
+     * @param writable 是否允许该客户端向串口写入
+     * @return 客户端编号，用于{@link #removeClient(int)}
+     */
+    public int addClient(@NonNull Socket socket, boolean writable) throws IOException {
+        try (ParcelFileDescriptor pfd = ParcelFileDescriptor.fromSocket(socket)) {
+            return addClient(pfd.getFileDescriptor(), writable);
+        }
+    }
+
+    /**
+     * 加入Unix域socket客户端；桥接持有自己的一份fd，调用者仍负责关闭socket
+     */
+    public int addClient(@NonNull LocalSocket socket, boolean writable) throws IOException {
+        return addClient(socket.getFileDescriptor(), writable);
+    }
+
+    /**
+     * 加入流式fd(socket、tty等字符设备)作为客户端；fd会被复制，调用者仍负责关闭原fd
+     * <p>
+     * 不会修改调用者fd的阻塞模式：socket复制后按每次调用非阻塞收发，其他fd按原访问模式经/proc/self/fd
+     * 重新打开一份独立的非阻塞描述。不支持pipe，需要进程内通道时用socket对
+     *
+     * @throws IOException 桥接未启动或已停止(包括因串口出错停止)时，或fd是pipe
+     */
+    public int addClient(@NonNull FileDescriptor fd, boolean writable) throws IOException {
+        synchronized (lock) {
+            if (handle == 0) throw new IOException("bridge is not running");
+            if (clients.size() + pendingAdds.size() >= MAX_CLIENTS) {
+                throw new IOException("too many bridge clients");
+            }
+            int id = nativeDup(fd);
+            pendingAdds.add(new int[]{id, writable ? 1 : 0});
+            if (handle != 0) nativeWakeup(handle);
+            return id;
+        }
+    }
+
+    /**
+     * 断开客户端并关闭桥接持有的fd
+     */
+    public void removeClient(int id) {
+        synchronized (lock) {
+            pendingRemoves.add(id);
+            if (handle != 0) nativeWakeup(handle);
+        }
+    }
+
+    public int getClientCount() {
+        synchronized (lock) {
+            return clients.size() + pendingAdds.size();
+        }
+    }
+
+    /**
+     * 发给客户端的总字节数
+     */
+    public long getBytesToClients() {
+        return counter(0);
+    }
+
+    /**
+     * 写入串口的总字节数
+     */
+    public long getBytesToSerial() {
+        return counter(1);
+    }
+
+    /**
+     * 没有客户端时读到并丢弃的字节数
+     */
+    public long getDroppedBytes() {
+        return counter(2);
+    }
+
+    private long counter(int index) {
+        synchronized (lock) {
+            if (handle != 0) nativeGetCounters(handle, counters);
+            return counters[index];
+        }
+    }
+
+    /**
+     * 启动转发线程；因串口出错停止后可以再次调用。客户端须在启动后加入
+     */
+    public synchronized void start() throws IOException {
+        synchronized (lock) {
+            if (thread != null) return;
+        }
+        long h = nativeCreate(spliceEnabled);
+        Thread t = new Thread(this::loop, TAG + "-" + serialPort.getDevice().getName());
+        synchronized (lock) {
+            handle = h;
+            thread = t;
+            running = true;
+        }
+        t.start();
+    }
+
+    /**
+     * 停止转发并断开所有客户端，串口保持打开
+     */
+    public synchronized void stop() {
+        Thread t;
+        synchronized (lock) {
+            t = thread;
+            if (t == null) return;
+            running = false;
+            if (handle != 0) nativeWakeup(handle);
+        }
+        if (t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void loop() {
+        IOException error = null;
+        try {
+            while (running) {
+                applyPending();
+                int fd = nativeRun(handle, serialPort.fd());
+                if (fd >= 0) {
+                    Log.d(TAG, "client " + fd + " disconnected");
+                    synchronized (lock) {
+                        clients.remove(Integer.valueOf(fd));
+                    }
+                    nativeRemoveClient(handle, fd);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "bridge stopped", e);
+            error = e;
+        } finally {
+            synchronized (lock) {
+                nativeGetCounters(handle, counters);
+                //未加入的客户端也由nativeRemoveClient关闭
+                for (int[] add : pendingAdds) nativeRemoveClient(handle, add[0]);
+                pendingAdds.clear();
+                pendingRemoves.clear();
+                clients.clear();
+                nativeDestroy(handle);
+                handle = 0;
+                running = false;
+                thread = null;
+            }
+        }
+        Listener l = listener;
+        if (l != null) l.onStopped(error);
+    }
+
+    private void applyPending() {
+        synchronized (lock) {
+            for (Integer id : pendingRemoves) {
+                if (clients.remove(id)) {
+                    nativeRemoveClient(handle, id);
+                    continue;
+                }
+                for (int i = 0; i < pendingAdds.size(); i++) {
+                    if (pendingAdds.get(i)[0] == id) {
+                        pendingAdds.remove(i);
+                        nativeRemoveClient(handle, id);
+                        break;
+                    }
+                }
+            }
+            pendingRemoves.clear();
+            for (int[] add : pendingAdds) {
+                try {
+                    nativeAddClient(handle, add[0], add[1] != 0);
+                    clients.add(add[0]);
+                } catch (IOException e) {
+                    Log.w(TAG, "cannot add client " + add[0], e);
+                    nativeRemoveClient(handle, add[0]);
+                }
+            }
+            pendingAdds.clear();
+        }
+    }
+
+    private static native long nativeCreate(boolean useSplice) throws IOException;
+
+    private static native int nativeDup(FileDescriptor fd) throws IOException;
+
+    private static native void nativeAddClient(long handle, int fd, boolean writable) throws IOException;
+
+    private static native void nativeRemoveClient(long handle, int fd);
+
+    private static native int nativeRun(long handle, int serialFd) throws IOException;
+
+    private static native void nativeWakeup(long handle);
+
+    private static native void nativeGetCounters(long handle, long[] counters);
+
+    private static native void nativeDestroy(long handle);
+
+    static {
+        System.loadLibrary("serial_port");
+    }
+}
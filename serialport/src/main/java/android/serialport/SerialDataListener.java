@@ -0,0 +1,54 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * 串口接收回调，数据以(buffer, offset, length)的形式借出，不为每次读取分配数组
+ */
+public interface SerialDataListener {
+
+    /**
+     * 读线程已停止
+     */
+    int STATE_STOPPED = 0;
+    /**
+     * 读线程正在运行
+     */
+    int STATE_RUNNING = 1;
+    /**
+     * 连接断开，{@link SupervisedSerialPort}正在等待设备并重连
+     */
+    int STATE_RECONNECTING = 2;
+
+    /**
+     * 收到数据；buffer只在回调期间有效，返回后会被复用，需要保留时自行拷贝
+     *
+     * @param buffer 接收缓冲
+     * @param offset 有效数据的起始位置
+     * @param length 有效字节数
+     */
+    void onData(@NonNull byte[] buffer, int offset, int length);
+
+    /**
+     * 带到达时刻的收到数据回调，读线程调用此方法；默认转给{@link #onData(byte[], int, int)}
+     *
+     * @param timestampNanos read()返回时的CLOCK_MONOTONIC时刻，与{@link System#nanoTime()}可比较
+     */
+    default void onData(@NonNull byte[] buffer, int offset, int length, long timestampNanos) {
+        onData(buffer, offset, length);
+    }
+
+    /**
+     * 读取出错；之后{@link SerialReader}停止，{@link SupervisedSerialPort}进入重连，并回调{@link #onStateChanged(int)}
+     */
+    default void onError(@NonNull IOException e) {
+    }
+
+    /**
+     * @param state {@link #STATE_RUNNING}、{@link #STATE_RECONNECTING}或{@link #STATE_STOPPED}
+     */
+    default void onStateChanged(int state) {
+    }
+}
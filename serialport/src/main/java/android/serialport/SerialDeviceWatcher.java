@@ -0,0 +1,82 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 基于inotify监视设备目录(一般为/dev)中设备节点的创建、删除与权限变化，用于USB转串口拔插后的重连
+ */
+public final class SerialDeviceWatcher implements Closeable {
+
+    private final File directory;
+    private final int inotifyFd;
+    private final int wakeFd;
+    private volatile boolean closed;
+
+    /**
+     * @param directory 监视的目录
+     */
+    public SerialDeviceWatcher(@NonNull File directory) throws IOException {
+        this.directory = directory;
+        this.inotifyFd = nativeCreate(directory.getAbsolutePath());
+        try {
+            this.wakeFd = nativeCreateWakeup();
+        } catch (IOException e) {
+            nativeClose(inotifyFd);
+            throw e;
+        }
+    }
+
+    @NonNull
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 阻塞等待目录中某个文件的变化
+     *
+     * @param name      文件名，如ttyUSB0；null:任意文件
+     * @param timeoutMs 超时毫秒数；-1:一直等待
+     * @return 1:有变化(事件队列溢出时也返回1，由调用者重新检查)；0:超时；-1:被{@link #wakeup()}唤醒或已关闭
+     */
+    public int await(@Nullable String name, int timeoutMs) throws IOException {
+        if (closed) return -1;
+        return nativeWait(inotifyFd, wakeFd, name, timeoutMs);
+    }
+
+    /**
+     * 唤醒阻塞在{@link #await(String, int)}上的线程
+     */
+    public void wakeup() {
+        if (!closed) nativeWakeup(wakeFd);
+    }
+
+    /**
+     * 关闭前须确保没有线程阻塞在{@link #await(String, int)}上
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        nativeClose(inotifyFd);
+        nativeClose(wakeFd);
+    }
+
+    private static native int nativeCreate(String directory) throws IOException;
+
+    private static native int nativeCreateWakeup() throws IOException;
+
+    private static native int nativeWait(int inotifyFd, int wakeFd, String name, int timeoutMs) throws IOException;
+
+    private static native void nativeWakeup(int wakeFd);
+
+    private static native void nativeClose(int fd);
+
+    static {
+        System.loadLibrary("serial_port");
+    }
+}
@@ -0,0 +1,81 @@
+package android.serialport;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * RS-485本端回环过滤：记录写出的字节，从随后读到的数据开头去掉与之一致的部分
+ * <p>
+ * 半双工总线上对端只会在本端发完之后应答，回环一定排在应答之前，所以只比对开头；
+ * 出现不一致或超过预计的发完时刻仍未收到时放弃剩余的比对
+ */
+final class SerialEchoFilter {
+
+    private static final String TAG = "SerialEchoFilter";
+
+    private static final int CAPACITY = 4096;
+    //预计发完之后继续等待回环的时长，覆盖驱动与USB的延迟
+    private static final long SLACK_NANOS = 50_000_000L;
+
+    private final byte[] expected = new byte[CAPACITY];
+    private final long byteNanos;
+    private int head;
+    private int count;
+    private long expiresAt;
+
+    /**
+     * @param byteNanos 线路上发送一个字节的纳秒数
+     */
+    SerialEchoFilter(long byteNanos) {
+        this.byteNanos = byteNanos;
+    }
+
+    /**
+     * 在写出之前调用，回环可能在write返回前就已到达
+     */
+    synchronized void expect(ByteBuffer src, int position, int length) {
+        long now = System.nanoTime();
+        if (count > 0 && now - expiresAt > 0) count = 0;
+        if (count + length > CAPACITY) {
+            Log.w(TAG, "echo backlog exceeds " + CAPACITY + " bytes, not suppressed");
+            count = 0;
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            expected[(head + count + i) % CAPACITY] = src.get(position + i);
+        }
+        count += length;
+        expiresAt = now + count * byteNanos + SLACK_NANOS;
+    }
+
+    /**
+     * 去掉buffer中[position, position+length)开头的回环字节，其余字节前移
+     *
+     * @return 剩余的字节数
+     */
+    synchronized int strip(ByteBuffer buffer, int position, int length) {
+        if (count == 0) return length;
+        if (System.nanoTime() - expiresAt > 0) {
+            Log.d(TAG, "echo of " + count + " bytes not received");
+            count = 0;
+            return length;
+        }
+        int matched = 0;
+        while (matched < length && count > 0) {
+            if (buffer.get(position + matched) != expected[head]) {
+                Log.d(TAG, "echo mismatch, " + count + " bytes dropped from comparison");
+                count = 0;
+                break;
+            }
+            head = (head + 1) % CAPACITY;
+            count--;
+            matched++;
+        }
+        if (matched == 0) return length;
+        for (int i = matched; i < length; i++) {
+            buffer.put(position + i - matched, buffer.get(position + i));
+        }
+        return length - matched;
+    }
+}
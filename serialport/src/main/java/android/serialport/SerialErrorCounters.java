@@ -0,0 +1,24 @@
+package android.serialport;
+
+/**
+ * 内核串口驱动的累计错误计数(TIOCGICOUNT)
+ */
+public final class SerialErrorCounters {
+    public final int rx;
+    public final int tx;
+    public final int frame;
+    public final int overrun;
+    public final int parity;
+    public final int brk;
+    public final int bufferOverrun;
+
+    SerialErrorCounters(int[] values) {
+        this.rx = values[0];
+        this.tx = values[1];
+        this.frame = values[2];
+        this.overrun = values[3];
+        this.parity = values[4];
+        this.brk = values[5];
+        this.bufferOverrun = values[6];
+    }
+}
@@ -0,0 +1,146 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 串口异步操作的结果，由库内部的工作线程完成
+ */
+public class SerialFuture<V> implements Future<V> {
+
+    public interface Listener<V> {
+        /**
+         * 操作完成(成功、失败或取消)，在完成该操作的线程中回调
+         */
+        void onComplete(@NonNull SerialFuture<V> future);
+    }
+
+    private static final int PENDING = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int CANCELLED = 3;
+
+    private int state = PENDING;
+    //工作线程已开始执行，之后不能再取消
+    private boolean uncancellable;
+    private V value;
+    private Throwable cause;
+    private List<Listener<V>> listeners;
+
+    /**
+     * 以结果完成
+     *
+     * @return 是否由本次调用完成
+     */
+    public boolean complete(@Nullable V value) {
+        return finish(SUCCESS, value, null);
+    }
+
+    /**
+     * 以异常完成
+     *
+     * @return 是否由本次调用完成
+     */
+    public boolean fail(@NonNull Throwable cause) {
+        return finish(FAILURE, null, cause);
+    }
+
+    /**
+     * 取消尚未开始执行的操作；工作线程已开始执行(如字节已交给写线程合并)时返回false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(CANCELLED, null, null);
+    }
+
+    /**
+     * 工作线程开始执行前调用，之后{@link #cancel(boolean)}不再生效
+     *
+     * @return false:已取消或已完成，不应再执行
+     */
+    synchronized boolean setUncancellable() {
+        if (state != PENDING) return false;
+        uncancellable = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    /**
+     * 添加完成回调；已完成时立即在当前线程回调
+     */
+    public void addListener(@NonNull Listener<V> listener) {
+        synchronized (this) {
+            if (state == PENDING) {
+                if (listeners == null) listeners = new ArrayList<>(1);
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.onComplete(this);
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) wait();
+        return report();
+    }
+
+    @Override
+    public synchronized V get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    /**
+     * 失败原因；未完成或成功时为null
+     */
+    @Nullable
+    public synchronized Throwable getCause() {
+        return cause;
+    }
+
+    private V report() throws ExecutionException {
+        if (state == CANCELLED) throw new CancellationException();
+        if (state == FAILURE) throw new ExecutionException(cause);
+        return value;
+    }
+
+    private boolean finish(int newState, V value, Throwable cause) {
+        List<Listener<V>> toNotify;
+        synchronized (this) {
+            if (state != PENDING || (newState == CANCELLED && uncancellable)) return false;
+            this.state = newState;
+            this.value = value;
+            this.cause = cause;
+            toNotify = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        if (toNotify != null) {
+            for (Listener<V> listener : toNotify) listener.onComplete(this);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 多模式流式匹配(Aho-Corasick)：同时在字节流中查找多个特征串，如各类设备的ACK/NAK/错误码
+ * <p>
+ * 先{@link #add}所有模式并{@link #compile()}，编译结果为完整的状态转移表(状态数×256)；之后每个字节只查一次表，
+ * 与模式数量无关，匹配可以跨越数据块边界，重叠的匹配也会全部报告，{@link #match}不产生分配
+ */
+public final class SerialPatternMatcher {
+
+    public interface Listener {
+        /**
+         * 匹配到一个模式
+         *
+         * @param patternId 模式编号，即{@link #add(byte[])}的返回值
+         * @param position  匹配起点在流中的位置，从{@link #reset()}起计数；起点可能在之前的数据块中
+         */
+        void onMatch(int patternId, long position);
+    }
+
+    private final ArrayList<byte[]> patterns = new ArrayList<>();
+    private int[] patternLengths;
+    //next[state << 8 | byte]为下一个状态
+    private int[] next;
+    //状态s匹配到的模式为outputIds[outputStart[s]]到outputIds[outputStart[s + 1] - 1]
+    private int[] outputStart;
+    private int[] outputIds;
+    private boolean compiled;
+
+    private int state;
+    private long position;
+
+    /**
+     * 添加一个模式，之后需要重新{@link #compile()}
+     *
+     * @return 模式编号，从0开始
+     */
+    public int add(@NonNull byte[] pattern) {
+        if (pattern.length == 0) throw new IllegalArgumentException("empty pattern");
+        patterns.add(pattern.clone());
+        compiled = false;
+        return patterns.size() - 1;
+    }
+
+    /**
+     * 模式数量
+     */
+    public int size() {
+        return patterns.size();
+    }
+
+    /**
+     * 模式长度
+     */
+    public int patternLength(int patternId) {
+        return patterns.get(patternId).length;
+    }
+
+    /**
+     * 构建状态转移表，并{@link #reset()}
+     */
+    public void compile() {
+        int maxStates = 1;
+        for (byte[] p : patterns) maxStates += p.length;
+        int[] goTo = new int[maxStates << 8];
+        Arrays.fill(goTo, -1);
+        int[] terminal = new int[maxStates];
+        Arrays.fill(terminal, -1);
+        //同一状态上的重复模式用链表串起来
+        int[] sameNext = new int[patterns.size()];
+        int states = 1;
+        for (int id = 0; id < patterns.size(); id++) {
+            int s = 0;
+            for (byte b : patterns.get(id)) {
+                int i = (s << 8) | (b & 0xff);
+                if (goTo[i] < 0) goTo[i] = states++;
+                s = goTo[i];
+            }
+            sameNext[id] = terminal[s];
+            terminal[s] = id;
+        }
+
+        //按BFS顺序补全失败转移，得到完整的DFA
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int c = 0; c < 256; c++) {
+            int t = goTo[c];
+            if (t < 0) {
+                goTo[c] = 0;
+            } else {
+                fail[t] = 0;
+                queue[tail++] = t;
+            }
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            for (int c = 0; c < 256; c++) {
+                int i = (s << 8) | c;
+                int t = goTo[i];
+                int f = goTo[(fail[s] << 8) | c];
+                if (t < 0) {
+                    goTo[i] = f;
+                } else {
+                    fail[t] = f;
+                    queue[tail++] = t;
+                }
+            }
+        }
+
+        //每个状态的输出为自身的模式加上失败链上的模式；BFS顺序保证失败状态先算完
+        int[] start = new int[states + 1];
+        int[] count = new int[states];
+        for (int k = 0; k < states; k++) {
+            int s = k == 0 ? 0 : queue[k - 1];
+            int n = s == 0 ? 0 : count[fail[s]];
+            for (int id = terminal[s]; id >= 0; id = sameNext[id]) n++;
+            count[s] = n;
+        }
+        for (int s = 0; s < states; s++) start[s + 1] = start[s] + count[s];
+        int[] ids = new int[start[states]];
+        for (int k = 1; k < states; k++) {
+            int s = queue[k - 1];
+            int o = start[s];
+            for (int id = terminal[s]; id >= 0; id = sameNext[id]) ids[o++] = id;
+            int f = fail[s];
+            System.arraycopy(ids, start[f], ids, o, count[f]);
+        }
+
+        int[] lengths = new int[patterns.size()];
+        for (int id = 0; id < lengths.length; id++) lengths[id] = patterns.get(id).length;
+        this.next = states == maxStates ? goTo : Arrays.copyOf(goTo, states << 8);
+        this.outputStart = start;
+        this.outputIds = ids;
+        this.patternLengths = lengths;
+        this.compiled = true;
+        reset();
+    }
+
+    /**
+     * 丢弃跨数据块的部分匹配，位置从0重新计数
+     */
+    public void reset() {
+        state = 0;
+        position = 0;
+    }
+
+    /**
+     * 继续匹配一段数据
+     */
+    public void match(@NonNull byte[] buffer, int offset, int length, @NonNull Listener listener) {
+        if (!compiled) throw new IllegalStateException("not compiled");
+        int[] next = this.next;
+        int[] outputStart = this.outputStart;
+        int s = state;
+        long base = position - offset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            s = next[(s << 8) | (buffer[i] & 0xff)];
+            int o = outputStart[s];
+            int e = outputStart[s + 1];
+            for (; o < e; o++) {
+                int id = outputIds[o];
+                listener.onMatch(id, base + i + 1 - patternLengths[id]);
+            }
+        }
+        state = s;
+        position += length;
+    }
+}
@@ -19,6 +19,8 @@ package android.serialport;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import java.io.File;
 import java.io.FileDescriptor;
@@ -27,12 +29,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.TimeUnit;
 
 public final class SerialPort {
 
     private static final String TAG = "SerialPort";
 
-    private static final String DEFAULT_SU_PATH = "/system/bin/su";
+
+    /**
+     * 清空接收队列(TCIFLUSH)
+     */
+    public static final int FLUSH_INPUT = 0;
+    /**
+     * 清空发送队列(TCOFLUSH)
+     */
+    public static final int FLUSH_OUTPUT = 1;
+    /**
+     * 清空收发队列(TCIOFLUSH)
+     */
+    public static final int FLUSH_BOTH = 2;
+
     private final File device;
     private final int baudRate;
     private final int dataBits;
@@ -44,14 +62,30 @@ public final class SerialPort {
      * Do not remove or rename the field mFd: it is used by native method close();
      */
     private FileDescriptor mFd;
+    /*
+     * Do not remove or rename the field mWakeFd: it is used by native methods open(), close(), nativeRead() and wakeup();
+     */
+    private int mWakeFd = -1;
+    /*
+     * Do not remove or rename the field mLastReadNanos: it is set by native methods nativeRead() and nativeReadDirect();
+     */
+    private long mLastReadNanos;
     private FileInputStream mFileInputStream;
     private FileOutputStream mFileOutputStream;
+    private SerialPortConfig config;
+    private final SerialPortStats stats = new SerialPortStats();
+    private volatile SerialRecorder recorder;
+    private volatile String suPath;
+    //RS-485由native层切换RTS时的配置，null:不切换
+    private volatile SerialPortConfig rtsToggle;
+    private volatile SerialEchoFilter echoFilter;
+    private ByteBuffer toggleBuffer;
 
     /**
      * 串口
      *
      * @param device   串口设备文件
-     * @param baudRate 波特率
+     * @param baudRate 波特率；不在标准波特率表中的值通过termios2/BOTHER设置
      * @param dataBits 数据位；默认8,可选值为5~8
      * @param parity   奇偶校验；0:无校验位(NONE，默认)；1:奇校验位(ODD);2:偶校验位(EVEN)
      * @param stopBits 停止位；默认1；1:1位停止位；2:2位停止位
@@ -93,38 +127,290 @@ public final class SerialPort {
         this.makeAccessible(device.getAbsolutePath(), readable, writeable, null);
     }
 
+    /**
+     * 通过常驻的{@link SuSession}修改设备文件权限，同一su路径的会话在所有串口间共用
+     *
+     * @throws SecurityException 无法获得root或修改失败
+     */
     public void makeAccessible(String devPath, boolean readable, boolean writeable, String suPath) {
-        String cmd = null;
-        if (writeable && !device.canWrite()) {
-            cmd = "chmod 666 " + devPath + "\n" + "exit\n";
-        } else if (readable && !device.canRead()) {
-            cmd = "chmod 664 " + devPath + "\n" + "exit\n";
-        }
-        if (cmd == null) return;
-        String ePath = suPath;
-        if (suPath == null) ePath = DEFAULT_SU_PATH;
-        try {
-            /* Missing read/write permission, trying to chmod the file */
-            Process su;
-            su = Runtime.getRuntime().exec(ePath);
-            su.getOutputStream().write(cmd.getBytes());
-            if ((su.waitFor() != 0) || !device.canRead() || !device.canWrite()) {
-                throw new SecurityException();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new SecurityException();
-        }
+        SuSession session = SuSession.get(suPath == null ? SuSession.DEFAULT_SU_PATH : suPath);
+        session.makeAccessible(new File(devPath), readable, writeable);
     }
 
+    /**
+     * 设置后，{@link #open()}遇到权限不足时通过su会话chmod再重试一次；
+     * USB转串口重新枚举后设备节点恢复默认权限，重连时由此自动处理
+     *
+     * @param suPath su路径，null:不自动修改权限
+     */
+    public void setSuPath(@Nullable String suPath) {
+        this.suPath = suPath;
+    }
+
+    /**
+     * 打开并配置串口
+     *
+     * @throws SerialPortException 打开或配置失败，{@link SerialPortException#getReason()}给出原因
+     */
     public void open() throws IOException {
-        mFd = open(device.getAbsolutePath(), baudRate, dataBits, parity, stopBits, flags);
+        try {
+            mFd = open(device.getAbsolutePath(), baudRate, dataBits, parity, stopBits, flags);
+        } catch (SerialPortException e) {
+            String su = suPath;
+            if (su == null || e.getReason() != SerialPortException.REASON_PERMISSION_DENIED) throw e;
+            makeAccessible(device.getAbsolutePath(), true, true, su);
+            mFd = open(device.getAbsolutePath(), baudRate, dataBits, parity, stopBits, flags);
+        }
         if (mFd == null) {
             Log.e(TAG, "native open returns null");
             throw new IOException();
         }
         mFileInputStream = new FileInputStream(mFd);
         mFileOutputStream = new FileOutputStream(mFd);
+        if (config != null) {
+            try {
+                applyConfig(config);
+            } catch (IOException e) {
+                tryClose();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 应用读取调优参数；未打开时保存，在{@link #open()}后应用
+     */
+    public void applyConfig(@NonNull SerialPortConfig config) throws IOException {
+        this.config = config;
+        if (mFd == null) return;
+        nativeSetReadTimeouts(config.getVmin(), config.getVtime());
+        if (config.getLowLatency() != SerialPortConfig.LOW_LATENCY_UNCHANGED
+                && !nativeSetLowLatency(config.getLowLatency() == SerialPortConfig.LOW_LATENCY_ON)) {
+            Log.w(TAG, "low_latency is not supported by " + device);
+        }
+        if (config.getFlowControl() != SerialPortConfig.FLOW_CONTROL_UNCHANGED) {
+            nativeSetFlowControl(config.getFlowControl());
+        }
+        applyRs485(config);
+        echoFilter = config.isEchoSuppression()
+                ? new SerialEchoFilter(TimeUnit.SECONDS.toNanos(1) * getBitsPerByte() / Math.max(1, baudRate)) : null;
+    }
+
+    private void applyRs485(SerialPortConfig config) throws IOException {
+        int mode = config.getRs485();
+        if (mode == SerialPortConfig.RS485_UNCHANGED) return;
+        //驱动的延迟单位是毫秒
+        boolean kernel = nativeSetRs485(mode == SerialPortConfig.RS485_AUTO, config.isRs485RtsOnSend(),
+                (config.getRs485DelayBeforeSendUs() + 999) / 1000, (config.getRs485DelayAfterSendUs() + 999) / 1000);
+        boolean toggle = mode == SerialPortConfig.RS485_RTS_TOGGLE || (mode == SerialPortConfig.RS485_AUTO && !kernel);
+        if (mode == SerialPortConfig.RS485_AUTO && !kernel) {
+            Log.i(TAG, "TIOCSRS485 is not supported by " + device + ", toggling RTS around writes");
+        }
+        if (toggle && config.getFlowControl() == SerialPortConfig.FLOW_CONTROL_RTS_CTS) {
+            Log.w(TAG, "RTS/CTS flow control also drives RTS, RS-485 direction may be wrong");
+        }
+        //先切到接收状态，再开始按写入切换
+        if (toggle) nativeSetRts(!config.isRs485RtsOnSend());
+        rtsToggle = toggle ? config : null;
+    }
+
+    /**
+     * 最近一次{@link #read(byte[], int, int, int)}或{@link #read(ByteBuffer, int)}读到数据的时刻：
+     * native层在read()返回后立即取CLOCK_MONOTONIC，与{@link System#nanoTime()}同一时钟；
+     * 只应在读线程中、紧接着读取调用之后使用。{@link #getInputStream()}的读取不更新
+     */
+    public long getLastReadTimestampNanos() {
+        return mLastReadNanos;
+    }
+
+    /**
+     * 在当前线程上应用{@link SerialPortConfig#setReaderThreadPolicy(SerialThreadPolicy)}，由各读线程启动时调用
+     */
+    void applyReaderThreadPolicy() {
+        SerialPortConfig c = config;
+        SerialThreadPolicy policy = c == null ? null : c.getReaderThreadPolicy();
+        if (policy == null) return;
+        int applied = policy.applyToCurrentThread();
+        Log.d(TAG, device.getName() + " reader thread policy applied: 0x" + Integer.toHexString(applied));
+    }
+
+    /**
+     * 接收数据的{@link java.util.concurrent.Flow.Publisher}，按订阅者的需求读取
+     *
+     * @param chunkSize 每个数据块的最大字节数
+     */
+    @RequiresApi(30)
+    @NonNull
+    public SerialPublisher publisher(int chunkSize) {
+        return new SerialPublisher(this, chunkSize);
+    }
+
+    /**
+     * 发送数据的{@link java.util.concurrent.Flow.Subscriber}，写完一块再向上游请求下一块
+     *
+     * @param prefetch 预先请求的数据块数
+     */
+    @RequiresApi(30)
+    @NonNull
+    public SerialSubscriber subscriber(int prefetch) {
+        return new SerialSubscriber(this, prefetch);
+    }
+
+    /**
+     * 向对端发送XOFF(true)或XON(false)，用于软件流控下主动暂停/恢复对端发送(tcflow TCIOFF/TCION)
+     */
+    public void setReceivePaused(boolean paused) throws IOException {
+        nativeSetReceivePaused(paused);
+    }
+
+    /**
+     * 内核接收队列中未读的字节数(TIOCINQ)
+     */
+    public int getInputQueueSize() throws IOException {
+        return nativeQueueSize(false);
+    }
+
+    /**
+     * 内核发送队列中未发出的字节数(TIOCOUTQ)
+     */
+    public int getOutputQueueSize() throws IOException {
+        return nativeQueueSize(true);
+    }
+
+    /**
+     * 清空内核收发队列(tcflush)
+     *
+     * @param queue {@link #FLUSH_INPUT}、{@link #FLUSH_OUTPUT}或{@link #FLUSH_BOTH}
+     */
+    public void flush(int queue) throws IOException {
+        nativeFlush(queue);
+    }
+
+    /**
+     * 阻塞读取，在串口与唤醒fd上poll等待，空闲时不占用CPU
+     *
+     * @param buffer    接收缓冲
+     * @param offset    缓冲偏移
+     * @param length    最多读取的字节数
+     * @param timeoutMs 超时毫秒数；-1:一直等待
+     * @return 读取的字节数；0:超时；-1:被{@link #wakeup()}唤醒
+     */
+    public int read(@NonNull byte[] buffer, int offset, int length, int timeoutMs) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) return 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        int readC;
+        while (true) {
+            readC = nativeRead(buffer, offset, length, timeoutMs);
+            SerialEchoFilter e = echoFilter;
+            if (readC <= 0 || e == null) break;
+            readC = e.strip(ByteBuffer.wrap(buffer), offset, readC);
+            if (readC > 0) break;
+            //读到的全是本端回环，按剩余的超时继续等待
+            timeoutMs = remainingTimeout(timeoutMs, deadline);
+            if (timeoutMs == 0) break;
+        }
+        if (readC > 0) {
+            stats.recordRead(readC);
+            SerialRecorder r = recorder;
+            if (r != null) r.record(SerialRecorder.DIRECTION_RX, buffer, offset, readC);
+        }
+        return readC;
+    }
+
+    /**
+     * 阻塞读取到ByteBuffer；直接缓冲区由native层直接写入，不产生任何中间拷贝与分配
+     *
+     * @param buffer    接收缓冲，从position写入，最多remaining个字节，读取后position前移
+     * @param timeoutMs 超时毫秒数；-1:一直等待
+     * @return 读取的字节数；0:超时；-1:被{@link #wakeup()}唤醒
+     */
+    public int read(@NonNull ByteBuffer buffer, int timeoutMs) throws IOException {
+        if (buffer.isReadOnly()) throw new ReadOnlyBufferException();
+        int position = buffer.position();
+        int remaining = buffer.remaining();
+        if (remaining == 0) return 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        int readC;
+        while (true) {
+            if (buffer.isDirect()) {
+                readC = nativeReadDirect(buffer, position, remaining, timeoutMs);
+            } else {
+                readC = nativeRead(buffer.array(), buffer.arrayOffset() + position, remaining, timeoutMs);
+            }
+            SerialEchoFilter e = echoFilter;
+            if (readC <= 0 || e == null) break;
+            readC = e.strip(buffer, position, readC);
+            if (readC > 0) break;
+            timeoutMs = remainingTimeout(timeoutMs, deadline);
+            if (timeoutMs == 0) break;
+        }
+        if (readC > 0) {
+            SerialRecorder r = recorder;
+            if (r != null) r.record(SerialRecorder.DIRECTION_RX, buffer, position, readC);
+            buffer.position(position + readC);
+            stats.recordRead(readC);
+        }
+        return readC;
+    }
+
+    private static int remainingTimeout(int timeoutMs, long deadline) {
+        if (timeoutMs <= 0) return timeoutMs;
+        long left = deadline - System.nanoTime();
+        return left <= 0 ? 0 : (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(left));
+    }
+
+    /**
+     * 写入ByteBuffer中position到limit之间的全部字节，直接缓冲区不经过Java层拷贝
+     * <p>
+     * RS-485由native层切换RTS时，返回前已tcdrain确认发送完毕并切回接收状态
+     *
+     * @return 写入的字节数
+     */
+    public int write(@NonNull ByteBuffer buffer) throws IOException {
+        int position = buffer.position();
+        int remaining = buffer.remaining();
+        if (remaining == 0) return 0;
+        SerialRecorder r = recorder;
+        if (r != null) r.record(SerialRecorder.DIRECTION_TX, buffer, position, remaining);
+        SerialEchoFilter e = echoFilter;
+        if (e != null) e.expect(buffer, position, remaining);
+        long start = System.nanoTime();
+        SerialPortConfig toggle = rtsToggle;
+        if (toggle != null) {
+            remaining = writeToggled(buffer, position, remaining, toggle);
+            buffer.position(position + remaining);
+        } else if (buffer.isDirect()) {
+            remaining = nativeWriteDirect(buffer, position, remaining);
+            buffer.position(position + remaining);
+        } else if (buffer.hasArray()) {
+            mFileOutputStream.write(buffer.array(), buffer.arrayOffset() + position, remaining);
+            buffer.position(position + remaining);
+        } else {
+            byte[] bytes = new byte[remaining];
+            buffer.get(bytes);
+            mFileOutputStream.write(bytes);
+        }
+        stats.recordWrite(remaining, System.nanoTime() - start);
+        return remaining;
+    }
+
+    private synchronized int writeToggled(ByteBuffer buffer, int position, int length, SerialPortConfig toggle) throws IOException {
+        ByteBuffer direct = buffer;
+        int offset = position;
+        if (!buffer.isDirect()) {
+            if (toggleBuffer == null || toggleBuffer.capacity() < length) toggleBuffer = ByteBuffer.allocateDirect(length);
+            toggleBuffer.clear();
+            ByteBuffer src = buffer.duplicate();
+            src.position(position).limit(position + length);
+            toggleBuffer.put(src);
+            direct = toggleBuffer;
+            offset = 0;
+        }
+        return nativeWriteToggled(direct, offset, length, toggle.isRs485RtsOnSend(),
+                toggle.getRs485DelayBeforeSendUs(), toggle.getRs485DelayAfterSendUs());
     }
 
     // Getters and setters
@@ -153,6 +439,13 @@ public final class SerialPort {
         return baudRate;
     }
 
+    /**
+     * 驱动实际生效的波特率(TCGETS2)，非标准波特率时可能与{@link #getBaudRate()}略有差异
+     */
+    public int getActualBaudRate() throws IOException {
+        return nativeGetBaudRate();
+    }
+
     /**
      * 数据位；默认8,可选值为5~8
      */
@@ -174,15 +467,115 @@ public final class SerialPort {
         return stopBits;
     }
 
+    /**
+     * 每个字节在线路上占用的位数：起始位、数据位、校验位与停止位
+     */
+    int getBitsPerByte() {
+        return 1 + dataBits + (parity != 0 ? 1 : 0) + stopBits;
+    }
+
     public int getFlags() {
         return flags;
     }
 
+    /**
+     * 运行统计；只统计经过{@link #read}与{@link #write(ByteBuffer)}的数据，不含直接使用流的读写
+     */
+    @NonNull
+    public SerialPortStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 内核驱动的累计错误计数(TIOCGICOUNT)，驱动不支持时返回null
+     */
+    public SerialErrorCounters getErrorCounters() throws IOException {
+        int[] values = new int[7];
+        if (!nativeGetIcount(values)) return null;
+        return new SerialErrorCounters(values);
+    }
+
+    /**
+     * 挂上或取下收发录制器；与{@link #getStats()}一样只录制经过{@link #read}与{@link #write(ByteBuffer)}的数据
+     *
+     * @param recorder null:停止录制，录制器由调用者关闭
+     */
+    public void setRecorder(@Nullable SerialRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * 当前的收发录制器，未设置时为null
+     */
+    @Nullable
+    public SerialRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * 读取调优参数，未设置时为null
+     */
+    public SerialPortConfig getConfig() {
+        return config;
+    }
+
     // JNI
-    private native FileDescriptor open(String absolutePath, int baudRate, int dataBits, int parity, int stopBits, int flags);
+    private native FileDescriptor open(String absolutePath, int baudRate, int dataBits, int parity, int stopBits, int flags) throws SerialPortException;
 
+    /**
+     * 关闭串口；阻塞在read中的线程随之被唤醒，read返回-1
+     */
     public native void close();
 
+    private native int nativeRead(byte[] buffer, int offset, int length, int timeoutMs) throws IOException;
+
+    private native int nativeReadDirect(ByteBuffer buffer, int position, int length, int timeoutMs) throws IOException;
+
+    private native int nativeWriteDirect(ByteBuffer buffer, int position, int length) throws IOException;
+
+    private native void nativeSetReadTimeouts(int vmin, int vtime) throws IOException;
+
+    private native boolean nativeSetLowLatency(boolean enable) throws IOException;
+
+    private native int nativeQueueSize(boolean output) throws IOException;
+
+    private native void nativeFlush(int queue) throws IOException;
+
+    private native int nativeGetBaudRate() throws IOException;
+
+    private native boolean nativeGetIcount(int[] values) throws IOException;
+
+    private native void nativeSetFlowControl(int mode) throws IOException;
+
+    private native void nativeSetReceivePaused(boolean paused) throws IOException;
+
+    private native boolean nativeSetRs485(boolean enable, boolean rtsOnSend, int delayBeforeMs, int delayAfterMs) throws IOException;
+
+    private native void nativeSetRts(boolean on) throws IOException;
+
+    private native int nativeWriteToggled(ByteBuffer buffer, int position, int length,
+                                          boolean rtsOnSend, int delayBeforeUs, int delayAfterUs) throws IOException;
+
+    /**
+     * 阻塞直到输出队列中的字节全部发送完毕(tcdrain)
+     */
+    public native void drain() throws IOException;
+
+    /**
+     * 串口fd，供同包的{@link SerialPortSelector}等使用；未打开时为-1
+     */
+    native int fd();
+
+    /**
+     * 唤醒阻塞在{@link #read(byte[], int, int, int)}上的线程，使其返回-1
+     */
+    public native void wakeup();
+
+    /**
+     * 丢弃尚未被read消费的{@link #wakeup()}，避免下一次read立即返回-1
+     */
+    native void clearWakeup();
+
     /**
      * 关闭流和串口，已经try-catch
      */
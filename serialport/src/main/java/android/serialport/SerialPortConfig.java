@@ -0,0 +1,194 @@
+package android.serialport;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 串口读取调优参数，通过{@link SerialPort#applyConfig(SerialPortConfig)}应用
+ * <p>
+ * 默认值与cfmakeraw一致：VMIN=1，VTIME=0，不修改low_latency、流控与RS-485
+ */
+public final class SerialPortConfig {
+
+    public static final int LOW_LATENCY_UNCHANGED = -1;
+    public static final int LOW_LATENCY_OFF = 0;
+    public static final int LOW_LATENCY_ON = 1;
+
+    public static final int FLOW_CONTROL_UNCHANGED = -1;
+    /**
+     * 关闭CRTSCTS、IXON与IXOFF
+     */
+    public static final int FLOW_CONTROL_NONE = 0;
+    /**
+     * 硬件流控(CRTSCTS)：接收缓冲将满时驱动拉高RTS，对端CTS无效时暂停发送
+     */
+    public static final int FLOW_CONTROL_RTS_CTS = 1;
+    /**
+     * 软件流控(IXON|IXOFF)：接收缓冲将满时内核发送XOFF(0x13)，收到XOFF/XON时暂停/恢复发送；
+     * 数据中不能出现这两个字节
+     */
+    public static final int FLOW_CONTROL_XON_XOFF = 2;
+
+    public static final int RS485_UNCHANGED = -1;
+    /**
+     * 关闭驱动的RS-485模式与native的RTS切换
+     */
+    public static final int RS485_OFF = 0;
+    /**
+     * 优先用驱动的RS-485模式(TIOCSRS485)由驱动切换RTS；驱动不支持时退回{@link #RS485_RTS_TOGGLE}
+     */
+    public static final int RS485_AUTO = 1;
+    /**
+     * 每次{@link SerialPort#write(java.nio.ByteBuffer)}时在native层切换RTS：置位、写入、tcdrain、复位，
+     * 用于驱动不支持或收发器方向脚接线与驱动不一致的场合
+     */
+    public static final int RS485_RTS_TOGGLE = 2;
+
+    private int vmin = 1;
+    private int vtime = 0;
+    private int lowLatency = LOW_LATENCY_UNCHANGED;
+    private int flowControl = FLOW_CONTROL_UNCHANGED;
+    private SerialThreadPolicy readerThreadPolicy;
+    private int rs485 = RS485_UNCHANGED;
+    private boolean rs485RtsOnSend = true;
+    private int rs485DelayBeforeSendUs;
+    private int rs485DelayAfterSendUs;
+    private boolean echoSuppression;
+
+    /**
+     * 阻塞读(如{@link SerialPort#getInputStream()})的返回条件
+     * <ul>
+     * <li>批量吞吐：VMIN取期望的批量大小，VTIME取字节间超时</li>
+     * <li>最低延迟：VMIN=1，VTIME=0，收到一个字节就返回</li>
+     * </ul>
+     *
+     * @param vmin  最少字节数；0~255
+     * @param vtime 字节间超时，单位0.1秒；0~255
+     */
+    public SerialPortConfig setReadTimeouts(int vmin, int vtime) {
+        if (vmin < 0 || vmin > 255 || vtime < 0 || vtime > 255) {
+            throw new IllegalArgumentException("vmin and vtime must be in 0~255");
+        }
+        this.vmin = vmin;
+        this.vtime = vtime;
+        return this;
+    }
+
+    /**
+     * 通过TIOCSSERIAL设置ASYNC_LOW_LATENCY，驱动不支持时忽略
+     *
+     * @param lowLatency {@link #LOW_LATENCY_ON}、{@link #LOW_LATENCY_OFF}或{@link #LOW_LATENCY_UNCHANGED}
+     */
+    public SerialPortConfig setLowLatency(int lowLatency) {
+        this.lowLatency = lowLatency;
+        return this;
+    }
+
+    /**
+     * 流控方式；应用不再读取时由流控让对端暂停，而不是在内核缓冲溢出后丢数据
+     *
+     * @param flowControl {@link #FLOW_CONTROL_NONE}、{@link #FLOW_CONTROL_RTS_CTS}、{@link #FLOW_CONTROL_XON_XOFF}
+     *                    或{@link #FLOW_CONTROL_UNCHANGED}
+     */
+    public SerialPortConfig setFlowControl(int flowControl) {
+        if (flowControl < FLOW_CONTROL_UNCHANGED || flowControl > FLOW_CONTROL_XON_XOFF) {
+            throw new IllegalArgumentException("invalid flow control " + flowControl);
+        }
+        this.flowControl = flowControl;
+        return this;
+    }
+
+    /**
+     * 读线程({@link SerialReader}、{@link SupervisedSerialPort}、{@link SerialPublisher})启动时应用的调度策略，
+     * 用于对到达时刻敏感的场合；null:不修改
+     */
+    public SerialPortConfig setReaderThreadPolicy(@Nullable SerialThreadPolicy policy) {
+        this.readerThreadPolicy = policy;
+        return this;
+    }
+
+    /**
+     * RS-485半双工的方向控制
+     *
+     * @param rs485 {@link #RS485_AUTO}、{@link #RS485_RTS_TOGGLE}、{@link #RS485_OFF}或{@link #RS485_UNCHANGED}
+     */
+    public SerialPortConfig setRs485(int rs485) {
+        if (rs485 < RS485_UNCHANGED || rs485 > RS485_RTS_TOGGLE) {
+            throw new IllegalArgumentException("invalid rs485 mode " + rs485);
+        }
+        this.rs485 = rs485;
+        return this;
+    }
+
+    /**
+     * 发送期间RTS的状态，对应驱动的SER_RS485_RTS_ON_SEND；收发器DE脚接反时设为false。默认true
+     *
+     * @param rtsOnSend true:发送时置位RTS(TIOCM_RTS)，发送完复位
+     */
+    public SerialPortConfig setRs485RtsOnSend(boolean rtsOnSend) {
+        this.rs485RtsOnSend = rtsOnSend;
+        return this;
+    }
+
+    /**
+     * 切换RTS与发送之间的等待；驱动模式的单位是毫秒，不足1ms的部分向上取整。默认都为0
+     *
+     * @param beforeSendUs RTS切到发送状态后、写出第一个字节前的等待微秒数
+     * @param afterSendUs  最后一个字节发完后、RTS切回接收状态前的等待微秒数
+     */
+    public SerialPortConfig setRs485Delays(int beforeSendUs, int afterSendUs) {
+        if (beforeSendUs < 0 || afterSendUs < 0) throw new IllegalArgumentException("delays must not be negative");
+        this.rs485DelayBeforeSendUs = beforeSendUs;
+        this.rs485DelayAfterSendUs = afterSendUs;
+        return this;
+    }
+
+    /**
+     * 丢弃收发器回环的本端发送数据：读到的数据开头与刚写出的字节一致时去掉，
+     * 不一致(收发器不回环或总线冲突)时放弃比对。只对{@link SerialPort#write(java.nio.ByteBuffer)}写出的数据生效
+     */
+    public SerialPortConfig setEchoSuppression(boolean echoSuppression) {
+        this.echoSuppression = echoSuppression;
+        return this;
+    }
+
+    public int getVmin() {
+        return vmin;
+    }
+
+    public int getVtime() {
+        return vtime;
+    }
+
+    public int getLowLatency() {
+        return lowLatency;
+    }
+
+    public int getFlowControl() {
+        return flowControl;
+    }
+
+    @Nullable
+    public SerialThreadPolicy getReaderThreadPolicy() {
+        return readerThreadPolicy;
+    }
+
+    public int getRs485() {
+        return rs485;
+    }
+
+    public boolean isRs485RtsOnSend() {
+        return rs485RtsOnSend;
+    }
+
+    public int getRs485DelayBeforeSendUs() {
+        return rs485DelayBeforeSendUs;
+    }
+
+    public int getRs485DelayAfterSendUs() {
+        return rs485DelayAfterSendUs;
+    }
+
+    public boolean isEchoSuppression() {
+        return echoSuppression;
+    }
+}
@@ -0,0 +1,78 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * 串口系统调用失败，带失败原因分类与errno，调用者据此决定是否重试
+ */
+public class SerialPortException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 其他I/O错误
+     */
+    public static final int REASON_IO = 0;
+    /**
+     * 波特率无效，或驱动不支持该非标准波特率
+     */
+    public static final int REASON_INVALID_BAUD_RATE = 1;
+    /**
+     * 没有设备文件的读写权限(EACCES/EPERM)
+     */
+    public static final int REASON_PERMISSION_DENIED = 2;
+    /**
+     * 设备被独占(EBUSY)
+     */
+    public static final int REASON_BUSY = 3;
+    /**
+     * 设备不存在(ENOENT/ENODEV/ENXIO)，USB转串口可能正在重新枚举
+     */
+    public static final int REASON_NOT_FOUND = 4;
+    /**
+     * tcgetattr/tcsetattr配置失败
+     */
+    public static final int REASON_CONFIGURE_FAILED = 5;
+    /**
+     * 对端挂断或设备已移除(POLLHUP/POLLERR)
+     */
+    public static final int REASON_HANGUP = 6;
+
+    private final int reason;
+    private final int errno;
+
+    /**
+     * 由native层构造
+     *
+     * @param reason 失败原因，REASON_*
+     * @param errno  系统错误码；没有时为0
+     */
+    public SerialPortException(@NonNull String message, int reason, int errno) {
+        super(message);
+        this.reason = reason;
+        this.errno = errno;
+    }
+
+    /**
+     * 失败原因，REASON_*
+     */
+    public int getReason() {
+        return reason;
+    }
+
+    /**
+     * 系统错误码；没有时为0
+     */
+    public int getErrno() {
+        return errno;
+    }
+
+    /**
+     * 是否可能稍后自行恢复：设备忙、不存在、挂断或权限尚未设置好(ueventd会在节点创建后修改权限)
+     */
+    public boolean isTransient() {
+        return reason != REASON_INVALID_BAUD_RATE && reason != REASON_CONFIGURE_FAILED;
+    }
+}
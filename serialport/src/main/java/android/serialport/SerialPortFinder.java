@@ -0,0 +1,429 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 枚举真实串口：由/proc/tty/drivers得到串口驱动的设备名前缀，再从/sys/class/tty中只解析匹配的条目，
+ * 读取驱动名与USB VID/PID，不再对/dev下每个文件stat
+ * <p>
+ * 结果缓存在本对象中；{@link #startWatching(Listener)}后按/dev的inotify事件增量刷新，
+ * 片上UART的解析结果直接复用，只有新出现的与USB设备重新解析
+ */
+public final class SerialPortFinder implements Closeable {
+
+    private static final String TAG = "SerialPortFinder";
+
+    //同一次拔插会连续产生多个事件，静默这么久后再刷新
+    private static final int SETTLE_MS = 50;
+    //从tty的device目录向上查找USB设备(含idVendor)的最大层数
+    private static final int USB_SEARCH_DEPTH = 4;
+
+    /**
+     * 片上UART或其他非USB串口
+     */
+    public static final int TYPE_UART = 0;
+    /**
+     * USB转串口或USB CDC ACM
+     */
+    public static final int TYPE_USB = 1;
+
+    /**
+     * 设备列表变化回调，在监视线程中调用
+     */
+    public interface Listener {
+        void onDevicesChanged(@NonNull List<Device> devices);
+    }
+
+    public static final class Device {
+        private final String name;
+        private final File file;
+        private final String driver;
+        private final int type;
+        private final int vendorId;
+        private final int productId;
+        //解析时的sysfs真实路径，用于判断能否复用
+        final String sysfsPath;
+
+        Device(String name, File file, String driver, int type, int vendorId, int productId, String sysfsPath) {
+            this.name = name;
+            this.file = file;
+            this.driver = driver;
+            this.type = type;
+            this.vendorId = vendorId;
+            this.productId = productId;
+            this.sysfsPath = sysfsPath;
+        }
+
+        /**
+         * 设备名，如ttyS1、ttyUSB0
+         */
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 设备文件，如/dev/ttyUSB0
+         */
+        @NonNull
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * 内核驱动名，如serial8250、ftdi_sio、cdc_acm；无法确定时为/proc/tty/drivers中的tty驱动名
+         */
+        @NonNull
+        public String getDriver() {
+            return driver;
+        }
+
+        /**
+         * {@link #TYPE_UART}或{@link #TYPE_USB}
+         */
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * USB厂商ID；非USB设备为-1
+         */
+        public int getVendorId() {
+            return vendorId;
+        }
+
+        /**
+         * USB产品ID；非USB设备为-1
+         */
+        public int getProductId() {
+            return productId;
+        }
+
+        /**
+         * 当前进程是否可读写；每次调用都会访问文件系统
+         */
+        public boolean canReadWrite() {
+            return file.canRead() && file.canWrite();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Device)) return false;
+            Device d = (Device) o;
+            return type == d.type && vendorId == d.vendorId && productId == d.productId
+                    && name.equals(d.name) && driver.equals(d.driver);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((name.hashCode() * 31 + driver.hashCode()) * 31 + vendorId) * 31 + productId;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            if (type == TYPE_USB) {
+                return String.format("%s(%s %04x:%04x)", name, driver, vendorId, productId);
+            }
+            return name + "(" + driver + ")";
+        }
+    }
+
+    private static final class TtyDriver {
+        final String name;
+        final String prefix;
+
+        TtyDriver(String name, String prefix) {
+            this.name = name;
+            this.prefix = prefix;
+        }
+    }
+
+    private final File procDrivers;
+    private final File sysClassTty;
+    private final File devDirectory;
+
+    private List<TtyDriver> ttyDrivers;
+    private HashMap<String, Device> cache = new HashMap<>();
+    private List<Device> devices;
+
+    private SerialDeviceWatcher watcher;
+    private Thread watchThread;
+    private volatile boolean watching;
+
+    public SerialPortFinder() {
+        this(new File("/proc/tty/drivers"), new File("/sys/class/tty"), new File("/dev"));
+    }
+
+    SerialPortFinder(@NonNull File procDrivers, @NonNull File sysClassTty, @NonNull File devDirectory) {
+        this.procDrivers = procDrivers;
+        this.sysClassTty = sysClassTty;
+        this.devDirectory = devDirectory;
+    }
+
+    /**
+     * 串口列表，按名称排序；首次调用时枚举，之后返回缓存
+     */
+    @NonNull
+    public synchronized List<Device> getDevices() {
+        if (devices == null) refresh();
+        return devices;
+    }
+
+    /**
+     * 重新枚举；已解析过的片上UART直接复用
+     */
+    @NonNull
+    public synchronized List<Device> refresh() {
+        String[] names = sysClassTty.list();
+        if (names == null) {
+            //较新的Android可能禁止应用读取sysfs，退回只按名称过滤/dev
+            devices = listDevDirectory();
+            return devices;
+        }
+        Arrays.sort(names);
+        if (ttyDrivers == null) ttyDrivers = readTtyDrivers();
+        HashMap<String, Device> resolved = new HashMap<>();
+        ArrayList<Device> list = new ArrayList<>();
+        boolean reloaded = false;
+        for (String name : names) {
+            TtyDriver ttyDriver = null;
+            if (ttyDrivers != null) {
+                ttyDriver = matchTtyDriver(name);
+                if (ttyDriver == null && !reloaded && looksLikeSerial(name)) {
+                    //新插入的USB串口可能刚加载驱动模块，重新读取一次驱动表
+                    ttyDrivers = readTtyDrivers();
+                    reloaded = true;
+                    ttyDriver = ttyDrivers == null ? null : matchTtyDriver(name);
+                }
+                if (ttyDriver == null) continue;
+            } else if (!looksLikeSerial(name)) {
+                continue;
+            }
+            Device device = resolve(name, ttyDriver);
+            if (device == null) continue;
+            resolved.put(name, device);
+            list.add(device);
+        }
+        cache = resolved;
+        devices = Collections.unmodifiableList(list);
+        return devices;
+    }
+
+    /**
+     * 开始监视/dev，设备增删后刷新，列表有变化时回调
+     */
+    public synchronized void startWatching(@NonNull final Listener listener) throws IOException {
+        if (watchThread != null) throw new IllegalStateException("already watching");
+        final SerialDeviceWatcher w = new SerialDeviceWatcher(devDirectory);
+        watcher = w;
+        watching = true;
+        watchThread = new Thread(() -> watchLoop(w, listener), TAG);
+        watchThread.start();
+    }
+
+    public void stopWatching() {
+        Thread thread;
+        SerialDeviceWatcher w;
+        synchronized (this) {
+            thread = watchThread;
+            w = watcher;
+            watchThread = null;
+            watcher = null;
+            watching = false;
+        }
+        if (thread == null) return;
+        w.wakeup();
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        w.close();
+    }
+
+    @Override
+    public void close() {
+        stopWatching();
+    }
+
+    private void watchLoop(SerialDeviceWatcher w, Listener listener) {
+        List<Device> last = getDevices();
+        try {
+            while (watching) {
+                if (w.await(null, -1) < 0) break;
+                int r;
+                while ((r = w.await(null, SETTLE_MS)) > 0) {
+                    //等待事件平息
+                }
+                if (r < 0) break;
+                List<Device> now = refresh();
+                if (!now.equals(last)) {
+                    last = now;
+                    listener.onDevicesChanged(now);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "device watch failed", e);
+        }
+    }
+
+    private TtyDriver matchTtyDriver(String name) {
+        for (TtyDriver d : ttyDrivers) {
+            if (name.length() > d.prefix.length() && name.startsWith(d.prefix)
+                    && isDigits(name, d.prefix.length())) {
+                return d;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析/proc/tty/drivers中类型为serial的驱动；无法读取时返回null
+     * <p>
+     * 每行格式：驱动名 设备路径前缀 主设备号 次设备号范围 类型，如"usbserial /dev/ttyUSB 188 0-511 serial"
+     */
+    @Nullable
+    private List<TtyDriver> readTtyDrivers() {
+        ArrayList<TtyDriver> list = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(procDrivers))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length < 5 || !"serial".equals(columns[columns.length - 1])) continue;
+                String path = columns[1];
+                String prefix = path.substring(path.lastIndexOf('/') + 1);
+                if (!prefix.isEmpty()) list.add(new TtyDriver(columns[0], prefix));
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "cannot read " + procDrivers + ": " + e.getMessage());
+            return null;
+        }
+        return list;
+    }
+
+    /**
+     * 解析单个tty；虚拟终端或没有实际端口时返回null
+     */
+    @Nullable
+    private Device resolve(String name, @Nullable TtyDriver ttyDriver) {
+        String devicePath = canonicalPath(new File(sysClassTty, name + "/device"));
+        if (devicePath == null) return null;
+        Device cached = cache.get(name);
+        if (cached != null && cached.type == TYPE_UART && devicePath.equals(cached.sysfsPath)) return cached;
+
+        File device = new File(devicePath);
+        String driver = driverName(device);
+        if ("serial8250".equals(driver) && "0".equals(readLine(new File(sysClassTty, name + "/type")))) {
+            //8250驱动预留的ttyS*，没有对应的硬件(PORT_UNKNOWN)
+            return null;
+        }
+        if (driver == null) driver = ttyDriver != null ? ttyDriver.name : "unknown";
+
+        if (devicePath.contains("/usb")) {
+            File usb = device;
+            for (int i = 0; i < USB_SEARCH_DEPTH && usb != null; i++, usb = usb.getParentFile()) {
+                String vid = readLine(new File(usb, "idVendor"));
+                if (vid == null) continue;
+                String pid = readLine(new File(usb, "idProduct"));
+                return new Device(name, new File(devDirectory, name), driver, TYPE_USB,
+                        parseHex(vid), pid == null ? -1 : parseHex(pid), devicePath);
+            }
+        }
+        return new Device(name, new File(devDirectory, name), driver, TYPE_UART, -1, -1, devicePath);
+    }
+
+    /**
+     * device/driver链接的目标名；内核6.5起tty的device是serial-base的port/ctrl，需向上找到真正的设备
+     */
+    @Nullable
+    private static String driverName(File device) {
+        for (File d = device; d != null; d = d.getParentFile()) {
+            String driverPath = canonicalPath(new File(d, "driver"));
+            if (driverPath == null) return null;
+            String subsystem = canonicalPath(new File(d, "subsystem"));
+            if (subsystem != null && subsystem.endsWith("/serial-base")) continue;
+            return driverPath.substring(driverPath.lastIndexOf('/') + 1);
+        }
+        return null;
+    }
+
+    private List<Device> listDevDirectory() {
+        String[] names = devDirectory.list();
+        ArrayList<Device> list = new ArrayList<>();
+        if (names == null) return Collections.unmodifiableList(list);
+        Arrays.sort(names);
+        for (String name : names) {
+            if (!looksLikeSerial(name)) continue;
+            boolean usb = name.startsWith("ttyUSB") || name.startsWith("ttyACM");
+            list.add(new Device(name, new File(devDirectory, name), "unknown",
+                    usb ? TYPE_USB : TYPE_UART, -1, -1, null));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * tty开头、以数字结尾，且不是虚拟终端tty0~tty63
+     */
+    private static boolean looksLikeSerial(String name) {
+        if (!name.startsWith("tty") || name.length() < 5) return false;
+        if (isDigits(name, 3)) return false;
+        return Character.isDigit(name.charAt(name.length() - 1));
+    }
+
+    private static boolean isDigits(String s, int from) {
+        if (from >= s.length()) return false;
+        for (int i = from; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 解析符号链接后的路径；文件不存在时返回null
+     */
+    @Nullable
+    private static String canonicalPath(File file) {
+        try {
+            File canonical = file.getCanonicalFile();
+            return canonical.exists() ? canonical.getPath() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String readLine(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 64)) {
+            String line = reader.readLine();
+            return line == null ? null : line.trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int parseHex(String s) {
+        try {
+            return Integer.parseInt(s, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
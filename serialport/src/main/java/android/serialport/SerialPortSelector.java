@@ -0,0 +1,201 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多串口事件循环：所有串口注册在同一个epoll实例上，由一个线程分发可读/可写事件
+ * <p>
+ * 线程数不随串口数量增加；处理器在事件循环线程中回调，不应长时间阻塞
+ */
+public final class SerialPortSelector {
+
+    private static final String TAG = "SerialPortSelector";
+
+    /**
+     * 关注可读事件(EPOLLIN)
+     */
+    public static final int OP_READ = 1;
+    /**
+     * 关注可写事件(EPOLLOUT)
+     */
+    public static final int OP_WRITE = 4;
+
+    private static final int EPOLLERR = 0x008;
+    private static final int EPOLLHUP = 0x010;
+
+    private static final int EPOLL_CTL_ADD = 1;
+    private static final int EPOLL_CTL_DEL = 2;
+    private static final int EPOLL_CTL_MOD = 3;
+
+    public interface Handler {
+        /**
+         * 串口可读，可用{@link SerialPort#read(byte[], int, int, int)}以0超时读取
+         */
+        void onReadable(@NonNull SerialPort serialPort) throws IOException;
+
+        /**
+         * 串口可写
+         */
+        void onWritable(@NonNull SerialPort serialPort) throws IOException;
+
+        /**
+         * 串口出错或挂断，回调后该串口已被注销；挂断时为原因{@link SerialPortException#REASON_HANGUP}的{@link SerialPortException}
+         */
+        void onError(@NonNull SerialPort serialPort, @NonNull IOException e);
+    }
+
+    private static final class Registration {
+        final SerialPort serialPort;
+        final Handler handler;
+
+        Registration(SerialPort serialPort, Handler handler) {
+            this.serialPort = serialPort;
+            this.handler = handler;
+        }
+    }
+
+    private final int epfd;
+    private final int wakeFd;
+    private final ConcurrentHashMap<Integer, Registration> registrations = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    public SerialPortSelector() throws IOException {
+        epfd = nativeCreate();
+        try {
+            wakeFd = nativeCreateWakeup(epfd);
+        } catch (IOException e) {
+            nativeClose(epfd);
+            throw e;
+        }
+    }
+
+    /**
+     * 注册已打开的串口；可在任意线程调用
+     *
+     * @param ops {@link #OP_READ}、{@link #OP_WRITE}的组合
+     */
+    public void register(@NonNull SerialPort serialPort, int ops, @NonNull Handler handler) throws IOException {
+        int fd = serialPort.fd();
+        if (fd < 0) throw new IOException("serial port is not open");
+        if (registrations.putIfAbsent(fd, new Registration(serialPort, handler)) != null) {
+            throw new IllegalStateException(serialPort.getDevice() + " is already registered");
+        }
+        try {
+            nativeCtl(epfd, EPOLL_CTL_ADD, fd, ops);
+        } catch (IOException e) {
+            registrations.remove(fd);
+            throw e;
+        }
+    }
+
+    /**
+     * 修改关注的事件，例如有待写数据时加上{@link #OP_WRITE}，写完后去掉
+     */
+    public void interestOps(@NonNull SerialPort serialPort, int ops) throws IOException {
+        nativeCtl(epfd, EPOLL_CTL_MOD, serialPort.fd(), ops);
+    }
+
+    /**
+     * 注销串口，须在关闭串口之前调用
+     */
+    public void unregister(@NonNull SerialPort serialPort) {
+        int fd = serialPort.fd();
+        if (registrations.remove(fd) == null) return;
+        try {
+            nativeCtl(epfd, EPOLL_CTL_DEL, fd, 0);
+        } catch (IOException e) {
+            Log.w(TAG, "epoll_ctl(DEL) failed", e);
+        }
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this::loop, TAG);
+        thread.start();
+    }
+
+    /**
+     * 停止事件循环并释放epoll；已注册的串口不会被关闭
+     */
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            nativeWakeup(wakeFd);
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            thread = null;
+        }
+        registrations.clear();
+        nativeClose(wakeFd);
+        nativeClose(epfd);
+    }
+
+    private void loop() {
+        int[] fds = new int[64];
+        int[] events = new int[64];
+        while (running) {
+            int n;
+            try {
+                n = nativeWait(epfd, fds, events, -1);
+            } catch (IOException e) {
+                Log.e(TAG, "epoll_wait failed, selector stopped", e);
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (fds[i] == wakeFd) {
+                    nativeDrainWakeup(wakeFd);
+                    continue;
+                }
+                Registration registration = registrations.get(fds[i]);
+                if (registration == null) continue;
+                dispatch(registration, events[i]);
+            }
+        }
+    }
+
+    private void dispatch(Registration registration, int ready) {
+        SerialPort serialPort = registration.serialPort;
+        try {
+            if ((ready & OP_READ) != 0) registration.handler.onReadable(serialPort);
+            if ((ready & OP_WRITE) != 0) registration.handler.onWritable(serialPort);
+            if ((ready & (EPOLLERR | EPOLLHUP)) != 0 && (ready & OP_READ) == 0) {
+                throw new SerialPortException("serial port hung up", SerialPortException.REASON_HANGUP, 0);
+            }
+        } catch (IOException e) {
+            unregister(serialPort);
+            registration.handler.onError(serialPort, e);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "handler failed for " + serialPort.getDevice(), e);
+        }
+    }
+
+    private static native int nativeCreate() throws IOException;
+
+    private static native int nativeCreateWakeup(int epfd) throws IOException;
+
+    private static native void nativeCtl(int epfd, int op, int fd, int events) throws IOException;
+
+    private static native int nativeWait(int epfd, int[] fds, int[] events, int timeoutMs) throws IOException;
+
+    private static native void nativeWakeup(int wakeFd);
+
+    private static native void nativeDrainWakeup(int wakeFd);
+
+    private static native void nativeClose(int fd);
+
+    static {
+        System.loadLibrary("serial_port");
+    }
+}
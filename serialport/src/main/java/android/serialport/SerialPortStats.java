@@ -0,0 +1,98 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 串口运行统计：收发字节数、读写次数、读取块大小分布、写入内核耗时分布
+ * <p>
+ * 记录只做原子加，快照不加锁；内核侧的溢出/帧错误/校验错误计数见{@link SerialPort#getErrorCounters()}
+ */
+public final class SerialPortStats {
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final SerialHistogram readChunkSizes = new SerialHistogram();
+    private final SerialHistogram writeLatencyNanos = new SerialHistogram();
+
+    void recordRead(int bytes) {
+        bytesRead.addAndGet(bytes);
+        reads.incrementAndGet();
+        readChunkSizes.record(bytes);
+    }
+
+    void recordWrite(int bytes, long nanos) {
+        bytesWritten.addAndGet(bytes);
+        writes.incrementAndGet();
+        writeLatencyNanos.record(nanos);
+    }
+
+    public void reset() {
+        bytesRead.set(0);
+        bytesWritten.set(0);
+        reads.set(0);
+        writes.set(0);
+        readChunkSizes.reset();
+        writeLatencyNanos.reset();
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        return new Snapshot(System.nanoTime(), bytesRead.get(), bytesWritten.get(), reads.get(), writes.get(),
+                readChunkSizes.snapshot(), writeLatencyNanos.snapshot());
+    }
+
+    public static final class Snapshot {
+        public final long timeNanos;
+        public final long bytesRead;
+        public final long bytesWritten;
+        public final long reads;
+        public final long writes;
+        /**
+         * 每次读取的字节数分布
+         */
+        public final SerialHistogram.Snapshot readChunkSizes;
+        /**
+         * 每次write系统调用的耗时分布，纳秒
+         */
+        public final SerialHistogram.Snapshot writeLatencyNanos;
+
+        Snapshot(long timeNanos, long bytesRead, long bytesWritten, long reads, long writes,
+                 SerialHistogram.Snapshot readChunkSizes, SerialHistogram.Snapshot writeLatencyNanos) {
+            this.timeNanos = timeNanos;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.reads = reads;
+            this.writes = writes;
+            this.readChunkSizes = readChunkSizes;
+            this.writeLatencyNanos = writeLatencyNanos;
+        }
+
+        /**
+         * 与更早的快照相比每秒接收的字节数
+         */
+        public double bytesReadPerSecond(@NonNull Snapshot earlier) {
+            return perSecond(bytesRead - earlier.bytesRead, earlier);
+        }
+
+        public double bytesWrittenPerSecond(@NonNull Snapshot earlier) {
+            return perSecond(bytesWritten - earlier.bytesWritten, earlier);
+        }
+
+        public double readsPerSecond(@NonNull Snapshot earlier) {
+            return perSecond(reads - earlier.reads, earlier);
+        }
+
+        public double writesPerSecond(@NonNull Snapshot earlier) {
+            return perSecond(writes - earlier.writes, earlier);
+        }
+
+        private double perSecond(long delta, Snapshot earlier) {
+            long elapsed = timeNanos - earlier.timeNanos;
+            return elapsed <= 0 ? 0 : delta * 1e9 / elapsed;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * 以{@link Flow.Publisher}发布串口收到的数据块，读取量由订阅者的request(n)决定：
+ * 每个数据块消耗1个需求，需求为0时读线程不再读取串口
+ * <p>
+ * 不读取时数据积压在内核缓冲中，配合{@link SerialPortConfig#setFlowControl(int)}由流控让对端暂停，不会丢失：
+ * RTS/CTS由驱动在缓冲将满时拉高RTS；XON/XOFF在需求降为0时立即发送XOFF，恢复时发送XON。
+ * 未开启流控时对端持续发送会使内核缓冲溢出
+ * <p>
+ * 同一时间只允许一个订阅者；每个数据块都是新分配的ByteBuffer，订阅者可以保留
+ */
+@RequiresApi(30)
+public final class SerialPublisher implements Flow.Publisher<ByteBuffer> {
+
+    private static final String TAG = "SerialPublisher";
+
+    private final SerialPort serialPort;
+    private final int chunkSize;
+    private SerialSubscription active;
+
+    /**
+     * @param serialPort 已打开的串口；订阅期间不要再通过其他途径读取
+     * @param chunkSize  每个数据块的最大字节数
+     */
+    public SerialPublisher(@NonNull SerialPort serialPort, int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+        this.serialPort = serialPort;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        SerialSubscription subscription;
+        synchronized (this) {
+            if (active != null && !active.finished) {
+                subscription = null;
+            } else {
+                subscription = new SerialSubscription(subscriber);
+                active = subscription;
+            }
+        }
+        if (subscription == null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("serial port already has a subscriber"));
+            return;
+        }
+        Thread thread = new Thread(subscription, TAG + "-" + serialPort.getDevice().getName());
+        thread.start();
+    }
+
+    private final class SerialSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private long demand;
+        private boolean cancelled;
+        private boolean invalidRequest;
+        //读线程正在read中；只有这时cancel才需要唤醒，否则未消费的唤醒会让下一个读者的read立即返回-1
+        private boolean reading;
+        private boolean woken;
+        volatile boolean finished;
+
+        SerialSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) return;
+                if (n <= 0) {
+                    invalidRequest = true;
+                    cancelled = true;
+                } else {
+                    demand += n;
+                    //按规范累计需求溢出时视为无限
+                    if (demand < 0) demand = Long.MAX_VALUE;
+                }
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) return;
+                cancelled = true;
+                notifyAll();
+                //持锁唤醒，读线程退出前一定能看到woken
+                if (reading) {
+                    serialPort.wakeup();
+                    woken = true;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            //所有信号都在本线程中发出，保证按序且不并发
+            serialPort.applyReaderThreadPolicy();
+            subscriber.onSubscribe(this);
+            boolean softwareFlow = false;
+            SerialPortConfig config = serialPort.getConfig();
+            if (config != null) softwareFlow = config.getFlowControl() == SerialPortConfig.FLOW_CONTROL_XON_XOFF;
+            boolean paused = false;
+            try {
+                while (true) {
+                    synchronized (this) {
+                        if (demand == 0 && !cancelled) {
+                            if (softwareFlow && !paused) {
+                                serialPort.setReceivePaused(true);
+                                paused = true;
+                            }
+                            while (demand == 0 && !cancelled) wait();
+                        }
+                        if (cancelled) break;
+                        reading = true;
+                    }
+                    if (paused) {
+                        serialPort.setReceivePaused(false);
+                        paused = false;
+                    }
+                    ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+                    int readC;
+                    try {
+                        readC = serialPort.read(chunk, -1);
+                    } finally {
+                        synchronized (this) {
+                            reading = false;
+                        }
+                    }
+                    if (readC <= 0) continue;
+                    chunk.flip();
+                    synchronized (this) {
+                        if (cancelled) break;
+                        if (demand != Long.MAX_VALUE) demand--;
+                    }
+                    subscriber.onNext(chunk);
+                }
+                if (invalidRequest) {
+                    subscriber.onError(new IllegalArgumentException("request(n) requires n > 0"));
+                }
+            } catch (IOException e) {
+                boolean report;
+                synchronized (this) {
+                    report = !cancelled;
+                    cancelled = true;
+                }
+                if (report) subscriber.onError(e);
+                else Log.d(TAG, "stopped after cancel: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this) {
+                    //read在唤醒到达前已经返回数据时，唤醒仍留在eventfd中
+                    if (woken) serialPort.clearWakeup();
+                }
+                if (paused) {
+                    try {
+                        serialPort.setReceivePaused(false);
+                    } catch (IOException ignored) {
+                    }
+                }
+                finished = true;
+            }
+        }
+    }
+}
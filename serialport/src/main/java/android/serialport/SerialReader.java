@@ -0,0 +1,84 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * 串口读线程，基于{@link SerialPort#read(byte[], int, int, int)}阻塞等待，空闲时不占用CPU
+ */
+public final class SerialReader {
+
+    private static final String TAG = "SerialReader";
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final SerialPort serialPort;
+    private final SerialDataListener listener;
+    private final byte[] buffer;
+    private volatile boolean running;
+    private Thread thread;
+
+    public SerialReader(@NonNull SerialPort serialPort, @NonNull SerialDataListener listener) {
+        this(serialPort, DEFAULT_BUFFER_SIZE, listener);
+    }
+
+    /**
+     * @param serialPort 已打开的串口
+     * @param bufferSize 接收缓冲大小
+     * @param listener   数据、错误与状态回调，都在读线程中执行
+     */
+    public SerialReader(@NonNull SerialPort serialPort, int bufferSize, @NonNull SerialDataListener listener) {
+        this.serialPort = serialPort;
+        this.listener = listener;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this::loop, "SerialReader-" + serialPort.getDevice().getName());
+        thread.start();
+    }
+
+    /**
+     * 停止读线程并等待其退出，须在{@link SerialPort#close()}之前调用
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        running = false;
+        serialPort.wakeup();
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        serialPort.applyReaderThreadPolicy();
+        listener.onStateChanged(SerialDataListener.STATE_RUNNING);
+        while (running) {
+            int readC;
+            try {
+                readC = serialPort.read(buffer, 0, buffer.length, -1);
+            } catch (IOException e) {
+                Log.e(TAG, "read failed, reader stopped", e);
+                running = false;
+                listener.onError(e);
+                break;
+            }
+            if (readC > 0) listener.onData(buffer, 0, readC, serialPort.getLastReadTimestampNanos());
+        }
+        listener.onStateChanged(SerialDataListener.STATE_STOPPED);
+    }
+}
@@ -0,0 +1,236 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 收发数据录制器，通过{@link SerialPort#setRecorder(SerialRecorder)}挂到串口上，可由{@link SerialReplayer}回放
+ * <p>
+ * 数据追加到内存映射的分段文件中，记录时只有内存拷贝，没有系统调用；分段写满后切换到新文件，超过保留数量时删除最旧的分段。
+ * 进程崩溃时已写入的数据仍在页缓存中，不会丢失；掉电前需要调用{@link #force()}
+ * <p>
+ * 分段文件格式(小端)：文件头为magic(4)、版本(4)、创建时的currentTimeMillis(8)、创建时的nanoTime(8)；
+ * 之后每条记录为长度与方向(4，最高位为1表示发送)、nanoTime时间戳(8)、数据；长度为0表示分段结束
+ */
+public final class SerialRecorder implements Closeable {
+
+    private static final String TAG = "SerialRecorder";
+
+    /**
+     * 接收方向
+     */
+    public static final int DIRECTION_RX = 0;
+    /**
+     * 发送方向
+     */
+    public static final int DIRECTION_TX = 1;
+
+    static final int MAGIC = 0x50435053; //"SPCP"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 24;
+    static final int RECORD_HEADER_SIZE = 12;
+    static final int TX_FLAG = 0x80000000;
+    static final String SUFFIX = ".cap";
+
+    private final File directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ArrayDeque<File> segments = new ArrayDeque<>();
+
+    private MappedByteBuffer segment;
+    private int nextIndex;
+    private long recordedBytes;
+    private boolean closed;
+
+    /**
+     * 默认4MB一个分段，保留16个分段
+     *
+     * @param directory 分段文件目录，不存在时创建
+     * @param prefix    分段文件名前缀，文件名为prefix-000000.cap
+     */
+    public SerialRecorder(@NonNull File directory, @NonNull String prefix) throws IOException {
+        this(directory, prefix, 4 * 1024 * 1024, 16);
+    }
+
+    /**
+     * @param directory   分段文件目录，不存在时创建
+     * @param prefix      分段文件名前缀，文件名为prefix-000000.cap
+     * @param segmentSize 每个分段文件的字节数
+     * @param maxSegments 最多保留的分段数
+     */
+    public SerialRecorder(@NonNull File directory, @NonNull String prefix, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < FILE_HEADER_SIZE + RECORD_HEADER_SIZE + 4 + 1) throw new IllegalArgumentException("segmentSize too small");
+        if (maxSegments < 1) throw new IllegalArgumentException("maxSegments must be positive");
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("cannot create " + directory);
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        //接着已有的分段编号，旧的分段参与保留数量的计算
+        File[] existing = listSegments(directory, prefix);
+        segments.addAll(Arrays.asList(existing));
+        if (existing.length > 0) nextIndex = segmentIndex(existing[existing.length - 1], prefix) + 1;
+        rotate();
+    }
+
+    /**
+     * 记录一段收发数据，时间戳取当前nanoTime
+     *
+     * @param direction {@link #DIRECTION_RX}或{@link #DIRECTION_TX}
+     */
+    public void record(int direction, @NonNull byte[] buffer, int offset, int length) {
+        if (length <= 0) return;
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (closed) return;
+            while (length > 0) {
+                int n = reserve(direction, now, length);
+                if (n < 0) return;
+                segment.put(buffer, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+    }
+
+    /**
+     * 记录ByteBuffer中从position开始的length个字节，不改变其position与limit
+     *
+     * @param direction {@link #DIRECTION_RX}或{@link #DIRECTION_TX}
+     */
+    public void record(int direction, @NonNull ByteBuffer buffer, int position, int length) {
+        if (length <= 0) return;
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (closed) return;
+            int oldPosition = buffer.position();
+            int oldLimit = buffer.limit();
+            try {
+                while (length > 0) {
+                    int n = reserve(direction, now, length);
+                    if (n < 0) return;
+                    buffer.limit(position + n).position(position);
+                    segment.put(buffer);
+                    position += n;
+                    length -= n;
+                }
+            } finally {
+                buffer.limit(oldLimit).position(oldPosition);
+            }
+        }
+    }
+
+    /**
+     * 写入记录头，当前分段放不下时切换分段；超过分段容量的数据拆成多条记录
+     *
+     * @return 本条记录可写入的数据长度；-1:切换分段失败
+     */
+    private int reserve(int direction, long now, int length) {
+        //至少保留4字节给结束标记
+        int room = segment.remaining() - RECORD_HEADER_SIZE - 4;
+        if (room <= 0) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                Log.e(TAG, "capture stopped, cannot create segment", e);
+                closed = true;
+                segment = null;
+                return -1;
+            }
+            room = segment.remaining() - RECORD_HEADER_SIZE - 4;
+        }
+        int n = Math.min(room, length);
+        segment.putInt(direction == DIRECTION_TX ? n | TX_FLAG : n);
+        segment.putLong(now);
+        recordedBytes += n;
+        return n;
+    }
+
+    private void rotate() throws IOException {
+        File file = new File(directory, String.format(Locale.US, "%s-%06d%s", prefix, nextIndex++, SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer mapped;
+        try {
+            //新文件由内核填0，未写到的位置即为结束标记
+            raf.setLength(segmentSize);
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            //映射在通道关闭后仍然有效
+            raf.close();
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        mapped.putInt(MAGIC);
+        mapped.putInt(VERSION);
+        mapped.putLong(System.currentTimeMillis());
+        mapped.putLong(System.nanoTime());
+        segment = mapped;
+        segments.addLast(file);
+        while (segments.size() > maxSegments) {
+            //noinspection ResultOfMethodCallIgnored
+            segments.removeFirst().delete();
+        }
+    }
+
+    /**
+     * 已记录的数据字节数，不含记录头
+     */
+    public synchronized long getRecordedBytes() {
+        return recordedBytes;
+    }
+
+    /**
+     * 把当前分段刷到存储设备(msync)
+     */
+    public synchronized void force() {
+        if (segment != null) segment.force();
+    }
+
+    /**
+     * 停止录制；映射区域在被回收时解除
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        segment.force();
+        segment = null;
+    }
+
+    /**
+     * 按编号排序的分段文件
+     */
+    @NonNull
+    static File[] listSegments(@NonNull File directory, @NonNull String prefix) {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(prefix + "-") && name.endsWith(SUFFIX) && segmentIndex(name, prefix) >= 0);
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> Integer.compare(segmentIndex(a, prefix), segmentIndex(b, prefix)));
+        return files;
+    }
+
+    private static int segmentIndex(File file, String prefix) {
+        return segmentIndex(file.getName(), prefix);
+    }
+
+    private static int segmentIndex(String name, String prefix) {
+        try {
+            return Integer.parseInt(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
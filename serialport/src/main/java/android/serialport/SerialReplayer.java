@@ -0,0 +1,114 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 回放{@link SerialRecorder}录制的分段文件
+ * <p>
+ * 写到伪终端的主设备端时，在从设备上打开的{@link SerialPort}会按原始节奏(或加速)收到录制的数据，可用于分帧器的压力测试
+ */
+public final class SerialReplayer {
+
+    /**
+     * 逐条访问记录
+     */
+    public interface Visitor {
+        /**
+         * @param direction      {@link SerialRecorder#DIRECTION_RX}或{@link SerialRecorder#DIRECTION_TX}
+         * @param timestampNanos 录制时刻，按分段头中的currentTimeMillis换算成的纳秒，跨进程重启的分段之间也可比较
+         * @param buffer         数据，仅在回调期间有效
+         * @param length         数据长度
+         * @return false:停止遍历
+         */
+        boolean onRecord(int direction, long timestampNanos, @NonNull byte[] buffer, int length) throws IOException;
+    }
+
+    private final File[] segments;
+
+    /**
+     * @param directory 录制时的目录
+     * @param prefix    录制时的分段文件名前缀
+     */
+    public SerialReplayer(@NonNull File directory, @NonNull String prefix) {
+        this(SerialRecorder.listSegments(directory, prefix));
+    }
+
+    /**
+     * @param segments 按时间顺序排列的分段文件
+     */
+    public SerialReplayer(@NonNull File... segments) {
+        this.segments = segments.clone();
+    }
+
+    /**
+     * 按时间顺序遍历全部记录
+     */
+    public void forEach(@NonNull Visitor visitor) throws IOException {
+        byte[] buffer = new byte[4096];
+        for (File file : segments) {
+            MappedByteBuffer mapped;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.remaining() < SerialRecorder.FILE_HEADER_SIZE
+                    || mapped.getInt() != SerialRecorder.MAGIC || mapped.getInt() != SerialRecorder.VERSION) {
+                throw new IOException("not a capture segment: " + file);
+            }
+            long baseNanos = mapped.getLong() * 1000000L - mapped.getLong();
+            while (mapped.remaining() >= SerialRecorder.RECORD_HEADER_SIZE) {
+                int header = mapped.getInt();
+                if (header == 0) break;
+                int length = header & ~SerialRecorder.TX_FLAG;
+                long timestamp = mapped.getLong() + baseNanos;
+                if (length > mapped.remaining()) throw new IOException("truncated record in " + file);
+                if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+                mapped.get(buffer, 0, length);
+                int direction = (header & SerialRecorder.TX_FLAG) != 0 ? SerialRecorder.DIRECTION_TX : SerialRecorder.DIRECTION_RX;
+                if (!visitor.onRecord(direction, timestamp, buffer, length)) return;
+            }
+        }
+    }
+
+    /**
+     * 把某个方向的记录写到out，按录制时的间隔等待
+     *
+     * @param out       输出，一般为伪终端主设备端
+     * @param direction 回放的方向，通常为{@link SerialRecorder#DIRECTION_RX}，即模拟设备端的发送
+     * @param speed     回放倍速；1:原始速度；&lt;=0:不等待，尽快写出
+     * @return 写出的字节数
+     */
+    public long replay(@NonNull final OutputStream out, final int direction, final double speed) throws IOException {
+        final long[] state = new long[3]; //首条记录的时间戳、开始回放的nanoTime、写出的字节数
+        state[0] = Long.MIN_VALUE;
+        forEach((recordDirection, timestampNanos, buffer, length) -> {
+            if (recordDirection != direction) return true;
+            if (state[0] == Long.MIN_VALUE) {
+                state[0] = timestampNanos;
+                state[1] = System.nanoTime();
+            } else if (speed > 0) {
+                long due = state[1] + (long) ((timestampNanos - state[0]) / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) throw new InterruptedIOException();
+                }
+            }
+            out.write(buffer, 0, length);
+            state[2] += length;
+            return true;
+        });
+        out.flush();
+        return state[2];
+    }
+}
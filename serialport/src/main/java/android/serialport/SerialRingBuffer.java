@@ -0,0 +1,210 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者/单消费者的有界无锁字节环形缓冲，用于隔离串口读线程与数据处理线程
+ * <p>
+ * 生产者一般为{@link SerialReader}的回调，消费者为处理线程；同一时刻只允许一个线程写、一个线程读
+ */
+public final class SerialRingBuffer {
+
+    /**
+     * 缓冲满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 阻塞生产者直到有空间
+         */
+        BLOCK,
+        /**
+         * 丢弃最旧的未读字节
+         */
+        DROP_OLDEST,
+        /**
+         * 丢弃新写入的字节
+         */
+        DROP_NEWEST
+    }
+
+    private final byte[] data;
+    private final int mask;
+    private final OverflowPolicy policy;
+
+    //读位置，只增不减；DROP_OLDEST时生产者也会用CAS推进
+    private final AtomicLong head = new AtomicLong();
+    //写位置，只有生产者修改
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    private volatile long writtenBytes;
+    private volatile long droppedBytes;
+    private volatile long highWaterMark;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     * @param policy   缓冲满时的处理策略
+     */
+    public SerialRingBuffer(int capacity, @NonNull OverflowPolicy policy) {
+        if (capacity <= 0 || capacity > (1 << 30)) throw new IllegalArgumentException("capacity out of range");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.data = new byte[size];
+        this.mask = size - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * 生产者写入
+     *
+     * @return 实际写入的字节数；DROP_NEWEST时可能小于length
+     */
+    public int write(@NonNull byte[] src, int offset, int length) throws InterruptedException {
+        int capacity = data.length;
+        long t = tail.get();
+        switch (policy) {
+            case BLOCK:
+                int written = 0;
+                while (written < length) {
+                    int free = capacity - (int) (t - head.get());
+                    if (free == 0) {
+                        awaitSpace();
+                        continue;
+                    }
+                    int n = Math.min(free, length - written);
+                    copyIn(t, src, offset + written, n);
+                    t += n;
+                    written += n;
+                    publish(t);
+                }
+                return written;
+            case DROP_OLDEST:
+                if (length > capacity) {
+                    droppedBytes += length - capacity;
+                    offset += length - capacity;
+                    length = capacity;
+                }
+                while (true) {
+                    long h = head.get();
+                    int overflow = length - (capacity - (int) (t - h));
+                    if (overflow <= 0) break;
+                    if (head.compareAndSet(h, h + overflow)) {
+                        droppedBytes += overflow;
+                        break;
+                    }
+                }
+                copyIn(t, src, offset, length);
+                publish(t + length);
+                return length;
+            case DROP_NEWEST:
+            default:
+                int n = Math.min(length, capacity - (int) (t - head.get()));
+                if (n < length) droppedBytes += length - n;
+                if (n > 0) {
+                    copyIn(t, src, offset, n);
+                    publish(t + n);
+                }
+                return n;
+        }
+    }
+
+    /**
+     * 消费者读取，无数据时最多等待timeout
+     *
+     * @return 读取的字节数；0:超时
+     */
+    public int read(@NonNull byte[] dst, int offset, int length, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long h = head.get();
+            int available = (int) (tail.get() - h);
+            if (available > 0) {
+                int n = Math.min(available, length);
+                int index = (int) h & mask;
+                int first = Math.min(n, data.length - index);
+                System.arraycopy(data, index, dst, offset, first);
+                if (first < n) System.arraycopy(data, 0, dst, offset + first, n - first);
+                //CAS失败说明生产者按DROP_OLDEST覆盖了这段数据，重读
+                if (!head.compareAndSet(h, h + n)) continue;
+                Thread producer = waitingProducer;
+                if (producer != null) LockSupport.unpark(producer);
+                return n;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return 0;
+            waitingConsumer = Thread.currentThread();
+            if (tail.get() == h) LockSupport.parkNanos(this, remaining);
+            waitingConsumer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * 当前未读字节数
+     */
+    public int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 累计写入缓冲的字节数；DROP_NEWEST丢弃的字节不计入
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * 累计因缓冲满而丢弃的字节数
+     */
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    /**
+     * 未读字节数的历史最大值
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public void resetHighWaterMark() {
+        highWaterMark = available();
+    }
+
+    private void copyIn(long t, byte[] src, int offset, int n) {
+        int index = (int) t & mask;
+        int first = Math.min(n, data.length - index);
+        System.arraycopy(src, offset, data, index, first);
+        if (first < n) System.arraycopy(src, offset + first, data, 0, n - first);
+    }
+
+    private void publish(long newTail) {
+        writtenBytes += newTail - tail.get();
+        tail.set(newTail);
+        long used = newTail - head.get();
+        if (used > highWaterMark) highWaterMark = used;
+        Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+    }
+
+    private void awaitSpace() throws InterruptedException {
+        waitingProducer = Thread.currentThread();
+        if (tail.get() - head.get() == data.length) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+        waitingProducer = null;
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+}
@@ -0,0 +1,84 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * 以{@link Flow.Subscriber}把上游的数据块写入串口：在onNext中同步写出，写完一块才补充1个需求，
+ * 串口发送慢时上游自然被限速，已请求未写出的块不超过prefetch个
+ * <p>
+ * 上游完成后等待tcdrain并以写出的总字节数完成{@link #getCompletion()}；写失败时取消上游并以异常完成
+ */
+@RequiresApi(30)
+public final class SerialSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+    private final SerialPort serialPort;
+    private final int prefetch;
+    private final SerialFuture<Long> completion = new SerialFuture<>();
+    private Flow.Subscription subscription;
+    private long written;
+
+    /**
+     * @param serialPort 已打开的串口
+     * @param prefetch   预先请求的数据块数
+     */
+    public SerialSubscriber(@NonNull SerialPort serialPort, int prefetch) {
+        if (prefetch <= 0) throw new IllegalArgumentException("prefetch must be positive");
+        this.serialPort = serialPort;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * 上游完成并发送完毕时以写出的字节数完成，出错时失败
+     */
+    @NonNull
+    public SerialFuture<Long> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (this.subscription != null) {
+            //规范2.5：已有订阅时取消新的订阅
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        Objects.requireNonNull(item);
+        if (completion.isDone()) return;
+        try {
+            while (item.hasRemaining()) written += serialPort.write(item);
+        } catch (IOException e) {
+            subscription.cancel();
+            completion.fail(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.fail(Objects.requireNonNull(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            serialPort.drain();
+            completion.complete(written);
+        } catch (IOException e) {
+            completion.fail(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 读线程的调度策略：nice值、SCHED_FIFO实时优先级与CPU亲和性，减少到达时刻的抖动
+ * <p>
+ * 普通应用一般没有CAP_SYS_NICE，SCHED_FIFO会失败并退回nice值；负的nice值同样可能被拒绝，
+ * {@link #applyToCurrentThread()}返回实际生效的项
+ */
+public final class SerialThreadPolicy {
+
+    public static final int APPLIED_NICENESS = 1;
+    public static final int APPLIED_FIFO = 1 << 1;
+    public static final int APPLIED_AFFINITY = 1 << 2;
+
+    private static final int NICENESS_UNCHANGED = Integer.MIN_VALUE;
+
+    private int niceness = NICENESS_UNCHANGED;
+    private int fifoPriority;
+    private long cpuMask;
+
+    /**
+     * @param niceness -20~19，越小优先级越高；Android的THREAD_PRIORITY_URGENT_AUDIO为-19
+     */
+    @NonNull
+    public SerialThreadPolicy setNiceness(int niceness) {
+        if (niceness < -20 || niceness > 19) throw new IllegalArgumentException("niceness must be in -20~19");
+        this.niceness = niceness;
+        return this;
+    }
+
+    /**
+     * @param priority SCHED_FIFO优先级1~99；0:不使用SCHED_FIFO
+     */
+    @NonNull
+    public SerialThreadPolicy setFifoPriority(int priority) {
+        if (priority < 0 || priority > 99) throw new IllegalArgumentException("priority must be in 0~99");
+        this.fifoPriority = priority;
+        return this;
+    }
+
+    /**
+     * 绑定到指定CPU，如大核；编号超出当前系统时忽略
+     *
+     * @param cpus CPU编号0~63；不传时不修改
+     */
+    @NonNull
+    public SerialThreadPolicy setCpuAffinity(@NonNull int... cpus) {
+        long mask = 0;
+        for (int cpu : cpus) {
+            if (cpu < 0 || cpu > 63) throw new IllegalArgumentException("cpu must be in 0~63");
+            mask |= 1L << cpu;
+        }
+        this.cpuMask = mask;
+        return this;
+    }
+
+    /**
+     * 应用到调用线程
+     *
+     * @return 生效的项，APPLIED_*的组合
+     */
+    public int applyToCurrentThread() {
+        return nativeApply(niceness != NICENESS_UNCHANGED, niceness, fifoPriority, cpuMask);
+    }
+
+    private static native int nativeApply(boolean setNiceness, int niceness, int fifoPriority, long cpuMask);
+
+    static {
+        System.loadLibrary("serial_port");
+    }
+}
@@ -0,0 +1,153 @@
+package android.serialport;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 请求/应答事务层：发送请求，按匹配器关联应答帧，超时由时间轮统一处理
+ * <p>
+ * 应答帧由分帧器送入：{@code decoder.decode(buffer, 0, length, engine)}；
+ * maxInFlight大于1时允许流水线发送，应答按发送顺序依次尝试匹配
+ */
+public final class SerialTransactionEngine implements FrameDecoder.Listener {
+
+    public interface ResponseMatcher {
+        /**
+         * 判断一帧是否为请求的应答
+         */
+        boolean matches(@NonNull byte[] request, @NonNull byte[] buffer, int offset, int length);
+    }
+
+    private final class Transaction implements Runnable {
+        final byte[] request;
+        final ResponseMatcher matcher;
+        final SerialFuture<byte[]> future = new SerialFuture<>();
+        //submit在入队之后才赋值，应答可能先到；为null时不取消，超时触发时已不在队列中，直接返回
+        volatile HashedTimerWheel.Timeout timeout;
+
+        Transaction(byte[] request, ResponseMatcher matcher) {
+            this.request = request;
+            this.matcher = matcher;
+        }
+
+        void cancelTimeout() {
+            HashedTimerWheel.Timeout t = timeout;
+            if (t != null) t.cancel();
+        }
+
+        //超时
+        @Override
+        public void run() {
+            synchronized (SerialTransactionEngine.this) {
+                if (!waiting.remove(this) && !inFlight.remove(this)) return;
+            }
+            future.fail(new TimeoutException("no response within deadline"));
+            sendNext();
+        }
+    }
+
+    private final SerialWriter writer;
+    private final HashedTimerWheel timerWheel;
+    private final int maxInFlight;
+    private final ArrayDeque<Transaction> waiting = new ArrayDeque<>();
+    private final ArrayList<Transaction> inFlight = new ArrayList<>();
+
+    /**
+     * @param writer      已启动的写线程
+     * @param timerWheel  超时时间轮，可多个引擎共用
+     * @param maxInFlight 最多同时等待应答的请求数；1表示严格一问一答
+     */
+    public SerialTransactionEngine(@NonNull SerialWriter writer, @NonNull HashedTimerWheel timerWheel, int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive");
+        this.writer = writer;
+        this.timerWheel = timerWheel;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 提交请求
+     *
+     * @param timeout 从提交开始计算的截止时间
+     * @return 应答帧的拷贝；超时以TimeoutException失败，写入失败以IOException失败
+     */
+    @NonNull
+    public SerialFuture<byte[]> submit(@NonNull byte[] request, @NonNull ResponseMatcher matcher, long timeout, @NonNull TimeUnit unit) {
+        Transaction transaction = new Transaction(request, matcher);
+        synchronized (this) {
+            waiting.add(transaction);
+        }
+        transaction.timeout = timerWheel.newTimeout(transaction, timeout, unit);
+        sendNext();
+        return transaction.future;
+    }
+
+    @Override
+    public void onFrame(@NonNull byte[] buffer, int offset, int length) {
+        Transaction matched = null;
+        synchronized (this) {
+            for (int i = 0; i < inFlight.size(); i++) {
+                Transaction transaction = inFlight.get(i);
+                if (transaction.matcher.matches(transaction.request, buffer, offset, length)) {
+                    matched = inFlight.remove(i);
+                    break;
+                }
+            }
+        }
+        if (matched == null) return;
+        matched.cancelTimeout();
+        byte[] response = new byte[length];
+        System.arraycopy(buffer, offset, response, 0, length);
+        matched.future.complete(response);
+        sendNext();
+    }
+
+    /**
+     * 以IOException结束所有未完成的请求
+     */
+    public void cancelAll() {
+        ArrayList<Transaction> all;
+        synchronized (this) {
+            all = new ArrayList<>(inFlight);
+            all.addAll(waiting);
+            inFlight.clear();
+            waiting.clear();
+        }
+        for (Transaction transaction : all) {
+            transaction.cancelTimeout();
+            transaction.future.fail(new IOException("transaction cancelled"));
+        }
+    }
+
+    /**
+     * 等待应答中的请求数
+     */
+    public synchronized int inFlight() {
+        return inFlight.size();
+    }
+
+    private void sendNext() {
+        while (true) {
+            final Transaction transaction;
+            synchronized (this) {
+                if (inFlight.size() >= maxInFlight || waiting.isEmpty()) return;
+                transaction = waiting.poll();
+                inFlight.add(transaction);
+            }
+            writer.write(transaction.request).addListener(future -> {
+                Throwable cause = future.getCause();
+                if (cause == null) return;
+                synchronized (SerialTransactionEngine.this) {
+                    if (!inFlight.remove(transaction)) return;
+                }
+                transaction.cancelTimeout();
+                transaction.future.fail(cause);
+                sendNext();
+            });
+        }
+    }
+}
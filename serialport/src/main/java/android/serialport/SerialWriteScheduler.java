@@ -0,0 +1,330 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按优先级通道与线路速率调度的写线程：每次从最高优先级的非空通道取一帧写出，同一通道内按提交顺序
+ * <p>
+ * 按波特率与帧格式估算每帧在线路上发完的时刻(令牌桶)，内核发送缓冲中只保留不超过burst字节的积压，
+ * 这样后到的控制帧最多排在burst字节之后，而不是排在整个批量数据之后；设置了帧间隔时等上一帧
+ * 发完再空闲指定时长才写下一帧。等待用纳秒级的park，最后一小段自旋
+ * <p>
+ * 排队中的帧可以取消，取消后不会写出；帧不会被拆开，正在写出的大帧不会被高优先级帧打断；通道之间是严格优先级，高优先级持续有数据时低优先级会饿死
+ * <p>
+ * 与{@link SupervisedSerialPort}一起使用时，在重连期间{@link #pause()}、恢复连接后{@link #resume()}，
+ * 断开期间提交的帧在重连后按原顺序写出
+ */
+public final class SerialWriteScheduler {
+
+    private static final String TAG = "SerialWriteScheduler";
+
+    /**
+     * 控制命令，最先发送
+     */
+    public static final int LANE_CONTROL = 0;
+    /**
+     * 周期轮询
+     */
+    public static final int LANE_POLL = 1;
+    /**
+     * 批量数据，如固件、日志
+     */
+    public static final int LANE_BULK = 2;
+
+    private static final int LANE_COUNT = 3;
+
+    //剩余等待时间小于该值时自旋，park的唤醒误差通常在50us左右
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final class Frame {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+        final SerialFuture<Integer> future = new SerialFuture<>();
+
+        Frame(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final SerialPort serialPort;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Frame>[] lanes = new ArrayDeque[LANE_COUNT];
+    private long byteNanos;
+    private int burstBytes;
+    private long frameGapNanos;
+    //估算的线路空闲时刻，System.nanoTime()时基
+    private long lineFreeAt;
+    private boolean running;
+    private boolean paused;
+    private Thread thread;
+
+    /**
+     * 速率按串口的波特率与数据位、校验位、停止位计算，burst默认为10ms的数据量
+     *
+     * @param serialPort 已打开的串口；调度期间不要再通过其他途径写入
+     */
+    public SerialWriteScheduler(@NonNull SerialPort serialPort) {
+        this.serialPort = serialPort;
+        for (int i = 0; i < LANE_COUNT; i++) lanes[i] = new ArrayDeque<>();
+        long bytesPerSecond = Math.max(1, serialPort.getBaudRate() / serialPort.getBitsPerByte());
+        setByteRate(bytesPerSecond);
+        setBurstBytes((int) Math.max(16, bytesPerSecond / 100));
+    }
+
+    /**
+     * 覆盖按波特率估算的速率，如对端处理能力低于线路速率时
+     *
+     * @param bytesPerSecond 每秒字节数
+     */
+    public void setByteRate(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) throw new IllegalArgumentException("bytesPerSecond must be positive");
+        lock.lock();
+        try {
+            byteNanos = TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 允许在内核发送缓冲中积压的字节数，越小控制帧的排队延迟越低，越大越不容易因调度延迟出现线路空闲
+     */
+    public void setBurstBytes(int bytes) {
+        if (bytes <= 0) throw new IllegalArgumentException("bytes must be positive");
+        lock.lock();
+        try {
+            burstBytes = bytes;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 帧间最小空闲时长，如Modbus RTU的3.5个字符时间；0:不限制(默认)。运行中可以修改
+     */
+    public void setMinFrameGap(long gap, @NonNull TimeUnit unit) {
+        if (gap < 0) throw new IllegalArgumentException("gap must not be negative");
+        lock.lock();
+        try {
+            frameGapNanos = unit.toNanos(gap);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (thread != null) return;
+            running = true;
+            lineFreeAt = System.nanoTime();
+            thread = new Thread(this::loop, TAG + "-" + serialPort.getDevice().getName());
+            thread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 暂停写出，如串口断开重连期间；已排队与之后提交的帧保留在通道中。正在写出的帧不受影响，串口关闭时以IOException失败
+     */
+    public void pause() {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 恢复写出，线路按空闲重新计时
+     */
+    public void resume() {
+        lock.lock();
+        try {
+            if (!paused) return;
+            paused = false;
+            lineFreeAt = System.nanoTime();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止写线程，未写出的帧以IOException失败
+     */
+    public void stop() {
+        Thread t;
+        lock.lock();
+        try {
+            if (thread == null) return;
+            t = thread;
+            thread = null;
+            running = false;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        failPending(new IOException("scheduler stopped"));
+    }
+
+    @NonNull
+    public SerialFuture<Integer> write(@NonNull byte[] bytes, int lane) {
+        return write(bytes, 0, bytes.length, lane);
+    }
+
+    /**
+     * 排队写入一帧；在future完成前调用方不可修改bytes
+     *
+     * @param lane LANE_CONTROL、LANE_POLL或LANE_BULK
+     * @return 帧交给内核后完成
+     */
+    @NonNull
+    public SerialFuture<Integer> write(@NonNull byte[] bytes, int offset, int length, int lane) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (lane < 0 || lane >= LANE_COUNT) throw new IllegalArgumentException("unknown lane " + lane);
+        Frame frame = new Frame(bytes, offset, length);
+        lock.lock();
+        try {
+            if (!running) {
+                frame.future.fail(new IOException("scheduler is not running"));
+                return frame.future;
+            }
+            lanes[lane].add(frame);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return frame.future;
+    }
+
+    /**
+     * 通道中尚未写出的帧数
+     */
+    public int pending(int lane) {
+        lock.lock();
+        try {
+            return lanes[lane].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            Frame frame;
+            lock.lock();
+            try {
+                frame = nextFrame();
+                if (frame == null) return;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                serialPort.write(ByteBuffer.wrap(frame.bytes, frame.offset, frame.length));
+                frame.future.complete(frame.length);
+            } catch (IOException e) {
+                Log.e(TAG, "write failed", e);
+                frame.future.fail(e);
+            }
+        }
+    }
+
+    /**
+     * 等到可以发送时取出最高优先级的帧并更新线路空闲时刻；持有lock调用，停止时返回null
+     */
+    private Frame nextFrame() throws InterruptedException {
+        while (running) {
+            if (paused) {
+                changed.await();
+                continue;
+            }
+            ArrayDeque<Frame> lane = null;
+            for (ArrayDeque<Frame> l : lanes) {
+                //已取消的帧不占用线路时间
+                while (!l.isEmpty() && l.peek().future.isCancelled()) l.poll();
+                if (!l.isEmpty()) {
+                    lane = l;
+                    break;
+                }
+            }
+            if (lane == null) {
+                changed.await();
+                continue;
+            }
+            Frame frame = lane.peek();
+            long frameNanos = frame.length * byteNanos;
+            long sendAt;
+            if (frameGapNanos > 0) {
+                sendAt = lineFreeAt + frameGapNanos;
+            } else {
+                //积压(线路空闲前剩余的数据加本帧)不超过burst；大于burst的帧等线路空闲后写出
+                sendAt = lineFreeAt - Math.max(0, burstBytes * byteNanos - frameNanos);
+            }
+            long now = System.nanoTime();
+            long wait = sendAt - now;
+            if (wait > SPIN_NANOS) {
+                //等待期间可能来了更高优先级的帧，醒来后重新选择
+                changed.awaitNanos(wait - SPIN_NANOS);
+                continue;
+            }
+            if (wait > 0) {
+                lock.unlock();
+                try {
+                    while (System.nanoTime() - sendAt < 0) Thread.yield();
+                } finally {
+                    lock.lock();
+                }
+                continue;
+            }
+            lane.poll();
+            if (!frame.future.setUncancellable()) continue;
+            if (lineFreeAt - now < 0) lineFreeAt = now;
+            lineFreeAt += frameNanos;
+            return frame;
+        }
+        return null;
+    }
+
+    private void failPending(IOException e) {
+        lock.lock();
+        try {
+            for (ArrayDeque<Frame> lane : lanes) {
+                Frame frame;
+                while ((frame = lane.poll()) != null) frame.future.fail(e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
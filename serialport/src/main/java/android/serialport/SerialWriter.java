@@ -0,0 +1,179 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 串口异步写线程：把排队中的多条小消息合并到一个直接缓冲区，一次write系统调用写出
+ * <p>
+ * 每条消息返回一个{@link SerialFuture}，在字节交给内核后完成；要求drain的消息在tcdrain确认发送完毕后才完成。
+ * 排队中的消息可以取消，取消后不会写出；开始合并后取消返回false
+ */
+public final class SerialWriter {
+
+    private static final String TAG = "SerialWriter";
+
+    private static final int DEFAULT_BATCH_SIZE = 16 * 1024;
+
+    private static final class Request {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+        final boolean drain;
+        final SerialFuture<Integer> future = new SerialFuture<>();
+
+        Request(byte[] bytes, int offset, int length, boolean drain) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.drain = drain;
+        }
+    }
+
+    private static final Request STOP = new Request(new byte[0], 0, 0, false);
+
+    private final SerialPort serialPort;
+    private final ByteBuffer batch;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ArrayList<Request> inFlight = new ArrayList<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    public SerialWriter(@NonNull SerialPort serialPort) {
+        this(serialPort, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param serialPort 已打开的串口
+     * @param batchSize  单次合并写出的最大字节数
+     */
+    public SerialWriter(@NonNull SerialPort serialPort, int batchSize) {
+        this.serialPort = serialPort;
+        this.batch = ByteBuffer.allocateDirect(batchSize);
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this::loop, "SerialWriter-" + serialPort.getDevice().getName());
+        thread.start();
+    }
+
+    /**
+     * 停止写线程，未写出的消息以IOException失败
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        running = false;
+        queue.offer(STOP);
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+        failPending(new IOException("writer stopped"));
+    }
+
+    @NonNull
+    public SerialFuture<Integer> write(@NonNull byte[] bytes) {
+        return write(bytes, 0, bytes.length, false);
+    }
+
+    /**
+     * 排队写入；在future完成前调用方不可修改bytes
+     *
+     * @param drain 是否等待tcdrain确认发送完毕后再完成
+     */
+    @NonNull
+    public SerialFuture<Integer> write(@NonNull byte[] bytes, int offset, int length, boolean drain) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        Request request = new Request(bytes, offset, length, drain);
+        if (!running) {
+            request.future.fail(new IOException("writer is not running"));
+            return request.future;
+        }
+        queue.offer(request);
+        if (!running && queue.remove(request)) request.future.fail(new IOException("writer stopped"));
+        return request.future;
+    }
+
+    /**
+     * 排队中尚未写出的消息数
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    private void loop() {
+        while (running) {
+            Request first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == STOP) break;
+            if (!first.future.setUncancellable()) continue;
+            try {
+                writeBatch(first);
+            } catch (IOException e) {
+                Log.e(TAG, "write failed", e);
+                for (Request request : inFlight) request.future.fail(e);
+            }
+            inFlight.clear();
+        }
+    }
+
+    private void writeBatch(Request first) throws IOException {
+        inFlight.add(first);
+        batch.clear();
+        boolean drain = first.drain;
+        if (first.length > batch.capacity()) {
+            //超过合并缓冲的大消息单独分段写出
+            for (int done = 0; done < first.length; ) {
+                int n = Math.min(batch.capacity(), first.length - done);
+                batch.clear();
+                batch.put(first.bytes, first.offset + done, n).flip();
+                serialPort.write(batch);
+                done += n;
+            }
+        } else {
+            batch.put(first.bytes, first.offset, first.length);
+            Request next;
+            while ((next = queue.peek()) != null && next != STOP && next.length <= batch.remaining()) {
+                queue.poll();
+                if (!next.future.setUncancellable()) continue;
+                batch.put(next.bytes, next.offset, next.length);
+                inFlight.add(next);
+                drain |= next.drain;
+            }
+            batch.flip();
+            serialPort.write(batch);
+        }
+        if (drain) {
+            for (Request request : inFlight) {
+                if (!request.drain) request.future.complete(request.length);
+            }
+            serialPort.drain();
+        }
+        for (Request request : inFlight) request.future.complete(request.length);
+    }
+
+    private void failPending(IOException e) {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            if (request != STOP) request.future.fail(e);
+        }
+    }
+}
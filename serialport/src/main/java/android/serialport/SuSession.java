@@ -0,0 +1,191 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 常驻的su会话：su只启动一次，之后的chmod等命令写入同一个root shell执行，
+ * 重连时修改权限不再需要fork su，也不会每次都等待授权弹窗
+ * <p>
+ * 命令超时或shell退出后会话失效，下次执行时重新启动su
+ */
+public final class SuSession implements Closeable {
+
+    private static final String TAG = "SuSession";
+
+    public static final String DEFAULT_SU_PATH = "/system/bin/su";
+
+    /**
+     * 首条命令包含等待用户授权的时间
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+
+    private static final String END_MARKER = "__serial_port_su_end__";
+    //reader线程在shell输出结束时放入的标记
+    private static final String EOF = new String("EOF");
+
+    private static final HashMap<String, SuSession> sessions = new HashMap<>();
+
+    private final String suPath;
+    private Process process;
+    private OutputStream stdin;
+    private LinkedBlockingQueue<String> output;
+
+    /**
+     * 指定su路径的共享会话，所有串口共用
+     */
+    @NonNull
+    public static SuSession get(@NonNull String suPath) {
+        synchronized (sessions) {
+            SuSession session = sessions.get(suPath);
+            if (session == null) {
+                session = new SuSession(suPath);
+                sessions.put(suPath, session);
+            }
+            return session;
+        }
+    }
+
+    @NonNull
+    public static SuSession getDefault() {
+        return get(DEFAULT_SU_PATH);
+    }
+
+    public SuSession(@NonNull String suPath) {
+        this.suPath = suPath;
+    }
+
+    /**
+     * 执行一条shell命令
+     *
+     * @param command   命令，由root shell解释
+     * @param timeoutMs 等待命令完成的毫秒数
+     * @return 退出码
+     * @throws InterruptedIOException 超时；会话随之关闭
+     */
+    public synchronized int exec(@NonNull String command, long timeoutMs) throws IOException {
+        ensureStarted();
+        try {
+            stdin.write((command + "\necho " + END_MARKER + " $?\n").getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+        } catch (IOException e) {
+            destroy();
+            throw e;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                String line = remaining > 0 ? output.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (line == null) {
+                    destroy();
+                    throw new InterruptedIOException("su command timed out: " + command);
+                }
+                if (line == EOF) {
+                    destroy();
+                    throw new IOException("su exited, permission denied?");
+                }
+                int marker = line.indexOf(END_MARKER);
+                if (marker < 0) {
+                    Log.d(TAG, line);
+                    continue;
+                }
+                try {
+                    return Integer.parseInt(line.substring(marker + END_MARKER.length()).trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        } catch (InterruptedException e) {
+            destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for su");
+        }
+    }
+
+    /**
+     * chmod设备文件，使当前进程可读写
+     *
+     * @throws SecurityException 会话无法启动、命令失败或修改后仍不可访问
+     */
+    public void makeAccessible(@NonNull File device, boolean readable, boolean writeable) {
+        String mode;
+        if (writeable && !device.canWrite()) {
+            mode = "666";
+        } else if (readable && !device.canRead()) {
+            mode = "664";
+        } else {
+            return;
+        }
+        int status;
+        try {
+            status = exec("chmod " + mode + " " + quote(device.getAbsolutePath()), DEFAULT_TIMEOUT_MS);
+        } catch (IOException e) {
+            throw new SecurityException("su failed: " + e.getMessage());
+        }
+        if (status != 0 || (readable && !device.canRead()) || (writeable && !device.canWrite())) {
+            throw new SecurityException("cannot chmod " + device);
+        }
+    }
+
+    public synchronized boolean isAlive() {
+        return process != null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process == null) return;
+        try {
+            stdin.write("exit\n".getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+        } catch (IOException ignored) {
+        }
+        destroy();
+    }
+
+    private void ensureStarted() throws IOException {
+        if (process != null) return;
+        Process p = new ProcessBuilder(suPath).redirectErrorStream(true).start();
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        Thread thread = new Thread(() -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) queue.add(line);
+            } catch (IOException ignored) {
+            }
+            queue.add(EOF);
+        }, TAG);
+        thread.setDaemon(true);
+        thread.start();
+        process = p;
+        stdin = p.getOutputStream();
+        output = queue;
+    }
+
+    private void destroy() {
+        if (process == null) return;
+        process.destroy();
+        process = null;
+        stdin = null;
+        output = null;
+    }
+
+    private static String quote(String s) {
+        return "'" + s.replace("'", "'\\''") + "'";
+    }
+}
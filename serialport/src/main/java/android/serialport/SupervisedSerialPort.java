@@ -0,0 +1,332 @@
+package android.serialport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 带自动重连的串口：读到错误或挂断(POLLHUP/EIO)后关闭串口，通过inotify等待设备节点重新出现，并按指数退避重试打开
+ * <p>
+ * 重连前后监听者保持不变，{@link SerialPortConfig}、统计与录制器随同一个{@link SerialPort}对象保留；
+ * 断开期间的写入按构造参数重放或直接失败
+ */
+public final class SupervisedSerialPort {
+
+    private static final String TAG = "SupervisedSerialPort";
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private static final class PendingWrite {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+        final boolean drain;
+        //当前交给写线程的那一次写入，暂存期间为null
+        volatile SerialFuture<Integer> written;
+        final SerialFuture<Integer> future = new SerialFuture<Integer>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                //写线程已开始合并时不能取消
+                SerialFuture<Integer> w = written;
+                if (w != null && !w.cancel(mayInterruptIfRunning) && !w.isCancelled()) return false;
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        PendingWrite(byte[] bytes, int offset, int length, boolean drain) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.drain = drain;
+        }
+    }
+
+    private final SerialPort serialPort;
+    private final boolean replayWrites;
+    private final SerialWriter writer;
+    private final byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    private final CopyOnWriteArrayList<SerialDataListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Object lock = new Object();
+    //断开期间暂存的写入，重连后按顺序重放；lock保护
+    private final ArrayList<PendingWrite> held = new ArrayList<>();
+    private int state = SerialDataListener.STATE_STOPPED;
+    private volatile boolean running;
+    private volatile boolean reconnectRequested;
+    private long minBackoffMs = 10;
+    private long maxBackoffMs = 5000;
+    private SerialDeviceWatcher watcher;
+    private Thread thread;
+
+    /**
+     * @param serialPort   串口，由本类负责打开与关闭；已经打开时直接使用
+     * @param replayWrites 断开期间及断开时未写出的消息是否在重连后重放；false时以IOException失败
+     */
+    public SupervisedSerialPort(@NonNull SerialPort serialPort, boolean replayWrites) {
+        this.serialPort = serialPort;
+        this.replayWrites = replayWrites;
+        this.writer = new SerialWriter(serialPort);
+    }
+
+    /**
+     * 重连退避范围，默认10ms~5s；设备节点出现时立即重试，不受退避限制
+     */
+    public void setReconnectBackoff(long minMs, long maxMs) {
+        if (minMs <= 0 || maxMs < minMs) throw new IllegalArgumentException("invalid backoff");
+        this.minBackoffMs = minMs;
+        this.maxBackoffMs = maxMs;
+    }
+
+    public void addListener(@NonNull SerialDataListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(@NonNull SerialDataListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 启动监管线程，在该线程中打开串口；打开失败时同样进入重连，
+     * 但{@link SerialPortException#isTransient()}为false(如波特率无效)时回调onError后停止
+     */
+    public synchronized void start() {
+        if (thread != null) return;
+        File directory = serialPort.getDevice().getAbsoluteFile().getParentFile();
+        try {
+            watcher = directory == null ? null : new SerialDeviceWatcher(directory);
+        } catch (IOException e) {
+            Log.w(TAG, "cannot watch " + directory + ", reconnect by polling only", e);
+            watcher = null;
+        }
+        running = true;
+        writer.start();
+        thread = new Thread(this::loop, "SupervisedSerialPort-" + serialPort.getDevice().getName());
+        thread.start();
+    }
+
+    /**
+     * 停止监管线程并关闭串口，暂存与未写出的消息以IOException失败
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        running = false;
+        serialPort.wakeup();
+        if (watcher != null) watcher.wakeup();
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+        writer.stop();
+        failHeld(new IOException("serial port stopped"));
+        if (watcher != null) watcher.close();
+        watcher = null;
+    }
+
+    /**
+     * {@link SerialDataListener#STATE_RUNNING}、{@link SerialDataListener#STATE_RECONNECTING}或{@link SerialDataListener#STATE_STOPPED}
+     */
+    public int getState() {
+        synchronized (lock) {
+            return state;
+        }
+    }
+
+    @NonNull
+    public SerialPort getSerialPort() {
+        return serialPort;
+    }
+
+    @NonNull
+    public SerialFuture<Integer> write(@NonNull byte[] bytes) {
+        return write(bytes, 0, bytes.length, false);
+    }
+
+    /**
+     * 排队写入；在future完成前调用方不可修改bytes
+     *
+     * @param drain 是否等待tcdrain确认发送完毕后再完成
+     */
+    @NonNull
+    public SerialFuture<Integer> write(@NonNull byte[] bytes, int offset, int length, boolean drain) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        PendingWrite w = new PendingWrite(bytes, offset, length, drain);
+        synchronized (lock) {
+            if (!running) {
+                w.future.fail(new IOException("serial port is not running"));
+                return w.future;
+            }
+            if (state != SerialDataListener.STATE_RUNNING) {
+                if (replayWrites) held.add(w);
+                else w.future.fail(new IOException("serial port is reconnecting"));
+                return w.future;
+            }
+            submit(w);
+        }
+        return w.future;
+    }
+
+    /**
+     * 交给写线程；失败时按策略暂存并触发重连，lock保护
+     */
+    private void submit(final PendingWrite w) {
+        SerialFuture<Integer> written = writer.write(w.bytes, w.offset, w.length, w.drain);
+        w.written = written;
+        written.addListener(f -> {
+            if (f.isCancelled()) return;
+            Throwable cause = f.getCause();
+            if (cause == null) {
+                w.future.complete(w.length);
+                return;
+            }
+            synchronized (lock) {
+                if (!replayWrites || !running) {
+                    w.future.fail(cause);
+                    return;
+                }
+                w.written = null;
+                held.add(w);
+                if (state == SerialDataListener.STATE_RUNNING) {
+                    //读线程还没发现异常，主动触发重连
+                    reconnectRequested = true;
+                    serialPort.wakeup();
+                }
+            }
+        });
+    }
+
+    private void failHeld(IOException e) {
+        ArrayList<PendingWrite> failed;
+        synchronized (lock) {
+            failed = new ArrayList<>(held);
+            held.clear();
+        }
+        for (PendingWrite w : failed) w.future.fail(e);
+    }
+
+    private void loop() {
+        serialPort.applyReaderThreadPolicy();
+        long backoff = minBackoffMs;
+        boolean reportOpenFailure = true;
+        while (running) {
+            try {
+                if (serialPort.fd() < 0) serialPort.open();
+            } catch (IOException | SecurityException e) {
+                if (e instanceof SerialPortException && !((SerialPortException) e).isTransient()) {
+                    //波特率或参数本身有误，重试也不会成功
+                    Log.e(TAG, "cannot configure " + serialPort.getDevice() + ", giving up", e);
+                    synchronized (lock) {
+                        running = false;
+                    }
+                    failHeld((SerialPortException) e);
+                    notifyError((SerialPortException) e);
+                    break;
+                }
+                if (reportOpenFailure) {
+                    Log.w(TAG, "cannot open " + serialPort.getDevice() + ", retrying", e);
+                    notifyError(e instanceof IOException ? (IOException) e : new IOException(e));
+                    reportOpenFailure = false;
+                }
+                setState(SerialDataListener.STATE_RECONNECTING);
+                awaitDevice(backoff);
+                backoff = Math.min(backoff * 2, maxBackoffMs);
+                continue;
+            }
+            long connectedAt = System.nanoTime();
+            reportOpenFailure = true;
+            reconnectRequested = false;
+            setState(SerialDataListener.STATE_RUNNING);
+
+            IOException failure = readUntilFailure();
+            serialPort.tryClose();
+            if (!running) break;
+            setState(SerialDataListener.STATE_RECONNECTING);
+            if (failure != null) {
+                Log.w(TAG, serialPort.getDevice() + " lost, reconnecting", failure);
+                notifyError(failure);
+            }
+            //连接稳定过一段时间才重置退避，避免反复挂断的设备把重连变成忙循环
+            if ((System.nanoTime() - connectedAt) / 1000000L > backoff) backoff = minBackoffMs;
+            awaitDevice(backoff);
+            backoff = Math.min(backoff * 2, maxBackoffMs);
+        }
+        setState(SerialDataListener.STATE_STOPPED);
+    }
+
+    /**
+     * @return 读取异常；被主动要求重连或停止时为null
+     */
+    private IOException readUntilFailure() {
+        while (running && !reconnectRequested) {
+            int readC;
+            try {
+                readC = serialPort.read(buffer, 0, buffer.length, -1);
+            } catch (IOException e) {
+                return e;
+            }
+            if (readC > 0) {
+                long timestamp = serialPort.getLastReadTimestampNanos();
+                for (SerialDataListener listener : listeners) listener.onData(buffer, 0, readC, timestamp);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 等待设备节点变化或退避超时
+     */
+    private void awaitDevice(long timeoutMs) {
+        SerialDeviceWatcher w = watcher;
+        if (w != null) {
+            try {
+                w.await(serialPort.getDevice().getName(), (int) timeoutMs);
+                return;
+            } catch (IOException e) {
+                Log.w(TAG, "device watch failed", e);
+            }
+        }
+        synchronized (lock) {
+            if (!running) return;
+            try {
+                lock.wait(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void setState(int newState) {
+        ArrayList<PendingWrite> replay = null;
+        synchronized (lock) {
+            if (state == newState) return;
+            state = newState;
+            if (newState == SerialDataListener.STATE_RUNNING && !held.isEmpty()) {
+                //先重放暂存的写入，之后的新写入排在它们后面
+                replay = new ArrayList<>(held);
+                held.clear();
+                for (PendingWrite w : replay) {
+                    if (!w.future.isCancelled()) submit(w);
+                }
+            }
+        }
+        if (replay != null) Log.d(TAG, "replayed " + replay.size() + " writes after reconnect");
+        for (SerialDataListener listener : listeners) listener.onStateChanged(newState);
+    }
+
+    private void notifyError(IOException e) {
+        for (SerialDataListener listener : listeners) listener.onError(e);
+    }
+}
@@ -0,0 +1,65 @@
+package android.serialport.modbus;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Modbus CRC16(多项式0xA001，初值0xFFFF)，slicing-by-8查表，每次处理8个字节
+ */
+public final class ModbusCrc {
+
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int prev = TABLES[k - 1][i];
+                TABLES[k][i] = (prev >>> 8) ^ TABLES[0][prev & 0xFF];
+            }
+        }
+    }
+
+    private ModbusCrc() {
+    }
+
+    /**
+     * 计算CRC，结果低字节在前发送
+     */
+    public static int crc16(@NonNull byte[] buffer, int offset, int length) {
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int crc = 0xFFFF;
+        int i = offset;
+        int end = offset + length;
+        for (; end - i >= 8; i += 8) {
+            crc = t7[(buffer[i] ^ crc) & 0xFF]
+                    ^ t6[(buffer[i + 1] ^ (crc >>> 8)) & 0xFF]
+                    ^ t5[buffer[i + 2] & 0xFF]
+                    ^ t4[buffer[i + 3] & 0xFF]
+                    ^ t3[buffer[i + 4] & 0xFF]
+                    ^ t2[buffer[i + 5] & 0xFF]
+                    ^ t1[buffer[i + 6] & 0xFF]
+                    ^ t0[buffer[i + 7] & 0xFF];
+        }
+        for (; i < end; i++) {
+            crc = (crc >>> 8) ^ t0[(crc ^ buffer[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    /**
+     * 校验以CRC结尾的完整报文
+     */
+    public static boolean check(@NonNull byte[] buffer, int offset, int length) {
+        if (length < 3) return false;
+        int crc = crc16(buffer, offset, length - 2);
+        return (buffer[offset + length - 2] & 0xFF) == (crc & 0xFF)
+                && (buffer[offset + length - 1] & 0xFF) == (crc >>> 8);
+    }
+}
@@ -0,0 +1,38 @@
+package android.serialport.modbus;
+
+import java.io.IOException;
+
+/**
+ * Modbus通信异常；从站返回的异常应答码或本地检测到的错误
+ */
+public class ModbusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 等待应答超时
+     */
+    public static final int TIMEOUT = -1;
+    /**
+     * 应答CRC校验失败
+     */
+    public static final int CRC_ERROR = -2;
+    /**
+     * 应答的从站地址、功能码或长度与请求不符
+     */
+    public static final int INVALID_RESPONSE = -3;
+
+    private final int exceptionCode;
+
+    public ModbusException(String message, int exceptionCode) {
+        super(message);
+        this.exceptionCode = exceptionCode;
+    }
+
+    /**
+     * 大于0为从站返回的异常码(如2:非法数据地址)，小于0为本类中定义的本地错误
+     */
+    public int getExceptionCode() {
+        return exceptionCode;
+    }
+}
@@ -0,0 +1,143 @@
+package android.serialport.modbus;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * 寄存器批量轮询：将同一从站上相邻或间隔很小的寄存器区间合并为尽量少的请求
+ * <p>
+ * 先{@link #add}所有区间并{@link #compile()}，之后每次{@link #poll(ModbusRtuMaster)}只做收发与拷贝，不产生分配
+ */
+public final class ModbusPollBatch {
+
+    private static final class Range implements Comparable<Range> {
+        final int slave;
+        final int address;
+        final int count;
+        int valueOffset;
+
+        Range(int slave, int address, int count) {
+            this.slave = slave;
+            this.address = address;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(Range o) {
+            if (slave != o.slave) return slave < o.slave ? -1 : 1;
+            return address < o.address ? -1 : (address == o.address ? 0 : 1);
+        }
+    }
+
+    private final int function;
+    private final int maxGap;
+    private final ArrayList<Range> ranges = new ArrayList<>();
+    private int[] requests = new int[0];
+    private int requestCount;
+    private int[] values = new int[0];
+    private int[] scratch = new int[0];
+
+    /**
+     * @param holding 为true时读保持寄存器，否则读输入寄存器
+     * @param maxGap  两个区间之间最多允许多读的寄存器数，用多读换少一次往返
+     */
+    public ModbusPollBatch(boolean holding, int maxGap) {
+        this.function = holding ? ModbusRtuMaster.READ_HOLDING_REGISTERS : ModbusRtuMaster.READ_INPUT_REGISTERS;
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * 添加一个寄存器区间
+     *
+     * @return 区间编号，用于{@link #get(int, int)}
+     */
+    public int add(int slave, int address, int count) {
+        if (count < 1) throw new IllegalArgumentException("count must be positive");
+        ranges.add(new Range(slave, address, count));
+        requestCount = -1;
+        return ranges.size() - 1;
+    }
+
+    /**
+     * 合并区间，生成请求列表
+     */
+    public void compile() {
+        ArrayList<Range> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted);
+        int[] merged = new int[sorted.size() * 3];
+        int n = 0;
+        int maxCount = 0;
+        for (Range range : sorted) {
+            if (n > 0) {
+                int slave = merged[(n - 1) * 3];
+                int start = merged[(n - 1) * 3 + 1];
+                int count = merged[(n - 1) * 3 + 2];
+                int end = Math.max(start + count, range.address + range.count);
+                if (slave == range.slave && range.address <= start + count + maxGap
+                        && end - start <= ModbusRtuMaster.MAX_READ_REGISTERS) {
+                    merged[(n - 1) * 3 + 2] = end - start;
+                    maxCount = Math.max(maxCount, end - start);
+                    continue;
+                }
+            }
+            merged[n * 3] = range.slave;
+            merged[n * 3 + 1] = range.address;
+            merged[n * 3 + 2] = range.count;
+            maxCount = Math.max(maxCount, range.count);
+            n++;
+        }
+        int total = 0;
+        for (Range range : ranges) {
+            range.valueOffset = total;
+            total += range.count;
+        }
+        requests = merged;
+        requestCount = n;
+        values = new int[total];
+        scratch = new int[maxCount];
+    }
+
+    /**
+     * 合并后的请求数
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * 执行一轮轮询，结果保存在本对象中
+     */
+    public void poll(@NonNull ModbusRtuMaster master) throws IOException {
+        if (requestCount < 0) throw new IllegalStateException("compile() has not been called");
+        for (int r = 0; r < requestCount; r++) {
+            int slave = requests[r * 3];
+            int start = requests[r * 3 + 1];
+            int count = requests[r * 3 + 2];
+            if (function == ModbusRtuMaster.READ_HOLDING_REGISTERS) {
+                master.readHoldingRegisters(slave, start, count, scratch, 0);
+            } else {
+                master.readInputRegisters(slave, start, count, scratch, 0);
+            }
+            for (int i = 0, size = ranges.size(); i < size; i++) {
+                Range range = ranges.get(i);
+                if (range.slave != slave || range.address < start || range.address + range.count > start + count) continue;
+                System.arraycopy(scratch, range.address - start, values, range.valueOffset, range.count);
+            }
+        }
+    }
+
+    /**
+     * 读取最近一次轮询的结果
+     *
+     * @param range 区间编号
+     * @param index 区间内的寄存器序号
+     */
+    public int get(int range, int index) {
+        Range r = ranges.get(range);
+        if (index < 0 || index >= r.count) throw new IndexOutOfBoundsException();
+        return values[r.valueOffset + index];
+    }
+}
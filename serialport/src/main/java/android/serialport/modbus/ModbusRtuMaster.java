@@ -0,0 +1,218 @@
+package android.serialport.modbus;
+
+import android.serialport.IdleGapFrameDecoder;
+import android.serialport.SerialPort;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Modbus RTU主站
+ * <p>
+ * 在调用线程中同步完成一问一答，收发缓冲全部复用，正常轮询不产生任何分配；
+ * 帧间静默期t3.5由串口的波特率、数据位、校验位、停止位计算
+ */
+public final class ModbusRtuMaster {
+
+    public static final int READ_COILS = 0x01;
+    public static final int READ_DISCRETE_INPUTS = 0x02;
+    public static final int READ_HOLDING_REGISTERS = 0x03;
+    public static final int READ_INPUT_REGISTERS = 0x04;
+    public static final int WRITE_SINGLE_COIL = 0x05;
+    public static final int WRITE_SINGLE_REGISTER = 0x06;
+    public static final int WRITE_MULTIPLE_REGISTERS = 0x10;
+
+    /**
+     * 单次读寄存器的最大数量
+     */
+    public static final int MAX_READ_REGISTERS = 125;
+    /**
+     * 单次写寄存器的最大数量
+     */
+    public static final int MAX_WRITE_REGISTERS = 123;
+    /**
+     * 单次读线圈的最大数量
+     */
+    public static final int MAX_READ_BITS = 2000;
+
+    private static final int MAX_ADU = 256;
+
+    private final SerialPort serialPort;
+    private final byte[] tx = new byte[MAX_ADU];
+    private final ByteBuffer txBuffer = ByteBuffer.allocateDirect(MAX_ADU);
+    private final byte[] rx = new byte[MAX_ADU];
+    private final long gapNanos;
+    private final int gapMillis;
+    private int responseTimeoutMs = 500;
+    private long lastActivityNanos;
+
+    /**
+     * @param serialPort 已打开的串口，由本对象独占读写
+     */
+    public ModbusRtuMaster(@NonNull SerialPort serialPort) {
+        this.serialPort = serialPort;
+        this.gapNanos = IdleGapFrameDecoder.modbusGapNanos(serialPort);
+        this.gapMillis = (int) Math.max(1, (gapNanos + 999999) / 1000000);
+        this.lastActivityNanos = System.nanoTime() - gapNanos;
+    }
+
+    /**
+     * 等待从站应答的超时，默认500毫秒
+     */
+    public void setResponseTimeout(int responseTimeoutMs) {
+        this.responseTimeoutMs = responseTimeoutMs;
+    }
+
+    public long getGapNanos() {
+        return gapNanos;
+    }
+
+    /**
+     * 读保持寄存器；count超过125时自动拆分为多次请求连续轮询
+     */
+    public void readHoldingRegisters(int slave, int address, int count, @NonNull int[] out, int outOffset) throws IOException {
+        readRegisters(READ_HOLDING_REGISTERS, slave, address, count, out, outOffset);
+    }
+
+    /**
+     * 读输入寄存器；count超过125时自动拆分为多次请求连续轮询
+     */
+    public void readInputRegisters(int slave, int address, int count, @NonNull int[] out, int outOffset) throws IOException {
+        readRegisters(READ_INPUT_REGISTERS, slave, address, count, out, outOffset);
+    }
+
+    /**
+     * 读线圈，每个线圈一个boolean
+     */
+    public void readCoils(int slave, int address, int count, @NonNull boolean[] out, int outOffset) throws IOException {
+        readBits(READ_COILS, slave, address, count, out, outOffset);
+    }
+
+    /**
+     * 读离散输入，每个输入一个boolean
+     */
+    public void readDiscreteInputs(int slave, int address, int count, @NonNull boolean[] out, int outOffset) throws IOException {
+        readBits(READ_DISCRETE_INPUTS, slave, address, count, out, outOffset);
+    }
+
+    public void writeSingleCoil(int slave, int address, boolean value) throws IOException {
+        int len = header(slave, WRITE_SINGLE_COIL, address, value ? 0xFF00 : 0x0000);
+        transact(len, 8);
+    }
+
+    public void writeSingleRegister(int slave, int address, int value) throws IOException {
+        int len = header(slave, WRITE_SINGLE_REGISTER, address, value);
+        transact(len, 8);
+    }
+
+    public void writeMultipleRegisters(int slave, int address, @NonNull int[] values, int offset, int count) throws IOException {
+        if (count < 1 || count > MAX_WRITE_REGISTERS) throw new IllegalArgumentException("count must be in 1~" + MAX_WRITE_REGISTERS);
+        int len = header(slave, WRITE_MULTIPLE_REGISTERS, address, count);
+        tx[len++] = (byte) (count * 2);
+        for (int i = 0; i < count; i++) {
+            int value = values[offset + i];
+            tx[len++] = (byte) (value >> 8);
+            tx[len++] = (byte) value;
+        }
+        transact(len, 8);
+    }
+
+    private void readRegisters(int function, int slave, int address, int count, int[] out, int outOffset) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, MAX_READ_REGISTERS);
+            int len = header(slave, function, address, n);
+            transact(len, 5 + n * 2);
+            if ((rx[2] & 0xFF) != n * 2) throw new ModbusException("byte count mismatch", ModbusException.INVALID_RESPONSE);
+            for (int i = 0, p = 3; i < n; i++, p += 2) {
+                out[outOffset + i] = ((rx[p] & 0xFF) << 8) | (rx[p + 1] & 0xFF);
+            }
+            address += n;
+            outOffset += n;
+            count -= n;
+        }
+    }
+
+    private void readBits(int function, int slave, int address, int count, boolean[] out, int outOffset) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, MAX_READ_BITS);
+            int bytes = (n + 7) / 8;
+            int len = header(slave, function, address, n);
+            transact(len, 5 + bytes);
+            if ((rx[2] & 0xFF) != bytes) throw new ModbusException("byte count mismatch", ModbusException.INVALID_RESPONSE);
+            for (int i = 0; i < n; i++) {
+                out[outOffset + i] = (rx[3 + (i >> 3)] & (1 << (i & 7))) != 0;
+            }
+            address += n;
+            outOffset += n;
+            count -= n;
+        }
+    }
+
+    private int header(int slave, int function, int address, int value) {
+        tx[0] = (byte) slave;
+        tx[1] = (byte) function;
+        tx[2] = (byte) (address >> 8);
+        tx[3] = (byte) address;
+        tx[4] = (byte) (value >> 8);
+        tx[5] = (byte) value;
+        return 6;
+    }
+
+    /**
+     * 发送tx中的PDU(自动追加CRC)并接收应答到rx
+     */
+    private void transact(int len, int expected) throws IOException {
+        int crc = ModbusCrc.crc16(tx, 0, len);
+        tx[len++] = (byte) crc;
+        tx[len++] = (byte) (crc >>> 8);
+
+        //保证与上一帧之间至少有t3.5的静默期
+        long wait = lastActivityNanos + gapNanos - System.nanoTime();
+        if (wait > 0) LockSupport.parkNanos(wait);
+        serialPort.flush(SerialPort.FLUSH_INPUT);
+        txBuffer.clear();
+        txBuffer.put(tx, 0, len).flip();
+        serialPort.write(txBuffer);
+
+        int got = readResponse(expected);
+        lastActivityNanos = System.nanoTime();
+        if (!ModbusCrc.check(rx, 0, got)) throw new ModbusException("crc error", ModbusException.CRC_ERROR);
+        if (rx[0] != tx[0] || (rx[1] & 0x7F) != tx[1]) {
+            throw new ModbusException("unexpected slave or function", ModbusException.INVALID_RESPONSE);
+        }
+        if ((rx[1] & 0x80) != 0) {
+            throw new ModbusException("slave exception " + (rx[2] & 0xFF), rx[2] & 0xFF);
+        }
+        if (got != expected) throw new ModbusException("length mismatch", ModbusException.INVALID_RESPONSE);
+    }
+
+    /**
+     * 按期望长度接收应答，直到收齐或超过应答截止时间；USB转串口按延迟定时器(FTDI约16ms)成批送达，
+     * 字节间的停顿不代表帧已结束。只有静默期超过t3.5且已收到的字节CRC正确时，才按长度不符的完整帧提前结束
+     */
+    private int readResponse(int expected) throws IOException {
+        int got = 0;
+        long deadline = System.nanoTime() + responseTimeoutMs * 1000000L;
+        while (got < expected) {
+            int timeoutMs = (int) ((deadline - System.nanoTime()) / 1000000);
+            if (timeoutMs <= 0) {
+                if (got == 0) throw new ModbusException("response timeout", ModbusException.TIMEOUT);
+                throw new ModbusException("incomplete response " + got + "/" + expected, ModbusException.TIMEOUT);
+            }
+            if (got > 0) timeoutMs = Math.min(timeoutMs, gapMillis);
+            int n = serialPort.read(rx, got, rx.length - got, timeoutMs);
+            if (n < 0) throw new InterruptedIOException("woken up");
+            if (n == 0) {
+                if (got >= 4 && ModbusCrc.check(rx, 0, got)) break;
+                continue;
+            }
+            got += n;
+            if (got >= 2 && (rx[1] & 0x80) != 0) expected = 5;
+        }
+        return got;
+    }
+}